@@ -0,0 +1,151 @@
+package org.epm.edu;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The inputs of a batch being parsed on an executor, see
+ * EasyParseMachine.parseAll(). Iterating over the batch
+ * hands out the results in order of input or of completion.
+ *
+ * Inputs are taken from their Iterable as results are handed
+ * out, so only a limited amount of inputs is pending at once.
+ */
+class Batch implements Iterator<ParseResult> {
+
+	private final Iterator<? extends CharSource> inputs;
+	private final String start;
+	private final SessionPool pool;
+	private final ExecutorService executor;
+	private final boolean ordered;
+	private final int maxPending;
+
+	private final CompletionService<ParseResult> completed; //Unordered batches only
+	private final ArrayDeque<Future<ParseResult>> pending = new ArrayDeque<Future<ParseResult>>();
+	private int submitted = 0;
+	private boolean closed = false;
+
+	/**
+	 * Create a new Batch
+	 *
+	 * @param inputs The inputs to parse
+	 * @param start The starting state name (override)
+	 * @param pool The sessions to parse with
+	 * @param executor The executor to parse on
+	 * @param ordered Whether to hand out the results in order of input, instead of completion
+	 * @param maxPending The maximum amount of inputs being parsed or waiting to be handed out
+	 */
+	Batch(Iterator<? extends CharSource> inputs, String start, SessionPool pool, ExecutorService executor,
+			boolean ordered, int maxPending){
+		this.inputs = inputs;
+		this.start = start;
+		this.pool = pool;
+		this.executor = executor;
+		this.ordered = ordered;
+		this.maxPending = maxPending;
+		this.completed = ordered ? null : new ExecutorCompletionService<ParseResult>(executor);
+	}
+
+	@Override
+	public boolean hasNext(){
+		submit();
+		if (pending.isEmpty()){
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public ParseResult next(){
+		if (!hasNext())
+			throw new NoSuchElementException();
+		try {
+			Future<ParseResult> future;
+			if (ordered){
+				future = pending.poll();
+			} else {
+				future = completed.take();
+				pending.remove(future);
+			}
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new IllegalStateException("Interrupted while parsing a batch", e);
+		} catch (ExecutionException e) {
+			//Parses catch their own exceptions, so this is an Error
+			close();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@Override
+	public void remove(){
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stop parsing, cancelling the inputs that did not start yet
+	 * and interrupting those being parsed, see ParseSession.cancel()
+	 */
+	void close(){
+		if (closed)
+			return;
+		closed = true;
+		for (Future<ParseResult> future : new ArrayList<Future<ParseResult>>(pending))
+			future.cancel(true);
+		pending.clear();
+	}
+
+	/**
+	 * Submit inputs until the maximum amount is pending
+	 */
+	private void submit(){
+		while (!closed && pending.size() < maxPending && inputs.hasNext()){
+			final CharSource input = inputs.next();
+			final int index = submitted++;
+			Callable<ParseResult> task = new Callable<ParseResult>(){
+				@Override
+				public ParseResult call() throws Exception {
+					return parse(index, input);
+				}
+			};
+			//Only unordered results go through the completion queue, else nobody takes them
+			pending.add(ordered ? executor.submit(task) : completed.submit(task));
+		}
+	}
+
+	/**
+	 * Parse a single input on a session of the pool
+	 *
+	 * @param index The position of the input in the batch
+	 * @param input The input
+	 * @return The outcome of the parse
+	 */
+	private ParseResult parse(int index, CharSource input){
+		ParseSession session = pool.acquire();
+		try {
+			session.setInput(input);
+			ParseTreeModel model = session.parse(start);
+			return new ParseResult(index, input, model, session.isAmbiguous(),
+					new ArrayList<String>(session.getDeletionSnapshot()), null);
+		} catch (Exception e) {
+			return new ParseResult(index, input, null, false,
+					new ArrayList<String>(session.getDeletionSnapshot()), e);
+		} finally {
+			pool.release(session);
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package org.epm.edu;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A reusable, array backed list of StateBuilders.
+ * Used as a worklist by the EPM, so it does not need
+ * to allocate new collections for every character.
+ */
+class BuilderList {
+
+	private StateBuilder[] builders = new StateBuilder[8];
+	private int size = 0;
+	
+	/**
+	 * Append a StateBuilder to the end of this list
+	 * 
+	 * @param sb The StateBuilder to add
+	 */
+	public void add(StateBuilder sb){
+		if (size == builders.length){
+			StateBuilder[] grown = new StateBuilder[size * 2];
+			System.arraycopy(builders, 0, grown, 0, size);
+			builders = grown;
+		}
+		builders[size++] = sb;
+	}
+	
+	/**
+	 * Append all StateBuilders of another list to the end of this list
+	 * 
+	 * @param other The list to copy the StateBuilders from
+	 */
+	public void addAll(BuilderList other){
+		for (int i = 0; i < other.size; i++)
+			add(other.builders[i]);
+	}
+	
+	/**
+	 * Get the StateBuilder at a certain index
+	 * 
+	 * @param index The index of the StateBuilder
+	 * @return The StateBuilder at the given index
+	 */
+	public StateBuilder get(int index){
+		return builders[index];
+	}
+	
+	/**
+	 * Remove and return the last StateBuilder of this list
+	 * 
+	 * @return The last StateBuilder
+	 */
+	public StateBuilder pop(){
+		StateBuilder out = builders[--size];
+		builders[size] = null;
+		return out;
+	}
+	
+	/**
+	 * Remove all StateBuilders that are marked as dead,
+	 * keeping the order of the remaining StateBuilders
+	 */
+	public void removeDead(){
+		int kept = 0;
+		for (int i = 0; i < size; i++){
+			if (!builders[i].isDead())
+				builders[kept++] = builders[i];
+		}
+		for (int i = kept; i < size; i++)
+			builders[i] = null;
+		size = kept;
+	}
+	
+	/**
+	 * Sort the StateBuilders in this list, keeping the
+	 * order of StateBuilders that compare equal
+	 * 
+	 * @param order The order to sort in
+	 */
+	public void sort(Comparator<StateBuilder> order){
+		Arrays.sort(builders, 0, size, order);
+	}
+	
+	/**
+	 * Remove all StateBuilders from this list
+	 */
+	public void clear(){
+		for (int i = 0; i < size; i++)
+			builders[i] = null;
+		size = 0;
+	}
+	
+	/**
+	 * Get the amount of StateBuilders in this list
+	 * 
+	 * @return The amount of StateBuilders
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Whether or not this list holds no StateBuilders
+	 * 
+	 * @return True iff the size of this list is 0
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+}
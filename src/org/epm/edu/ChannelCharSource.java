@@ -0,0 +1,48 @@
+package org.epm.edu;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A CharSource reading blocks of bytes from a ReadableByteChannel.
+ * Every byte is handed out as a single character (0-255).
+ */
+public class ChannelCharSource extends CharSource{
+
+	private final ReadableByteChannel feeder;
+	private final ByteBuffer bytes;
+
+	/**
+	 * Wrap a given ReadableByteChannel
+	 *
+	 * @param channel The channel to read bytes from
+	 */
+	public ChannelCharSource(ReadableByteChannel channel){
+		this(channel, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Wrap a given ReadableByteChannel, reading a certain
+	 * amount of bytes at once
+	 *
+	 * @param channel The channel to read bytes from
+	 * @param blockSize The maximum amount of bytes to read at once
+	 */
+	public ChannelCharSource(ReadableByteChannel channel, int blockSize){
+		super(blockSize);
+		feeder = channel;
+		bytes = ByteBuffer.allocate(blockSize);
+	}
+
+	@Override
+	protected int fill(char[] buffer) throws IOException {
+		bytes.clear();
+		int read = feeder.read(bytes);
+		byte[] array = bytes.array();
+		for (int i = 0; i < read; i++)
+			buffer[i] = (char) (array[i] & 0xFF);
+		return read;
+	}
+
+}
@@ -0,0 +1,267 @@
+package org.epm.edu;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of characters, see ConsumeWhile and ConsumeUntil.
+ *
+ * The ASCII characters are kept in a bitset of two longs,
+ * all other characters in a sorted table of ranges. EOF (-1)
+ * is never in a class.
+ *
+ * Classes of all characters but a few delimiters, see except(),
+ * are scanned by comparing characters to the delimiters directly.
+ *
+ * Compiling a class takes some work, so keep the classes
+ * you use in static fields.
+ */
+public final class CharClass {
+
+	/** Character.isWhitespace() */
+	public static final CharClass WHITESPACE = whitespace();
+	/** 0-9 */
+	public static final CharClass DIGITS = range('0', '9');
+	/** Nothing at all */
+	public static final CharClass NONE = new CharClass(new int[0]);
+
+	private static final int MAX = Character.MAX_CODE_POINT;
+	private static final int MAX_DELIMITERS = 3;
+
+	private final long low;
+	private final long high;
+	private final int[] ranges;
+	private final char[] delimiters;
+	private final int below;
+
+	/**
+	 * Compile a class from its ranges
+	 *
+	 * @param ranges The sorted, disjoint and non-adjacent inclusive ranges, as start and end pairs
+	 */
+	private CharClass(int[] ranges){
+		this(ranges, null, 0);
+	}
+
+	/**
+	 * Compile a class from its ranges
+	 *
+	 * @param ranges The sorted, disjoint and non-adjacent inclusive ranges, as start and end pairs
+	 * @param delimiters The only characters at or above below not in the class (or null if unknown)
+	 * @param below The characters below this are not in the class
+	 */
+	private CharClass(int[] ranges, char[] delimiters, int below){
+		this.ranges = ranges;
+		this.delimiters = delimiters;
+		this.below = below;
+		long low = 0;
+		long high = 0;
+		for (int i = 0; i < ranges.length && ranges[i] < 128; i += 2){
+			for (int c = ranges[i]; c <= ranges[i + 1] && c < 128; c++){
+				if (c < 64)
+					low |= 1L << c;
+				else
+					high |= 1L << (c - 64);
+			}
+		}
+		this.low = low;
+		this.high = high;
+	}
+
+	/**
+	 * @param chars The characters in the class
+	 * @return The class of the given characters
+	 */
+	public static CharClass of(String chars){
+		CharClass out = NONE;
+		for (int i = 0; i < chars.length(); i++)
+			out = out.or(range(chars.charAt(i), chars.charAt(i)));
+		return out;
+	}
+
+	/**
+	 * @param from The first character in the class
+	 * @param to The last character in the class
+	 * @return The class of all characters from and including from up to and including to
+	 */
+	public static CharClass range(int from, int to){
+		if (from < 0 || to > MAX || from > to)
+			throw new IllegalArgumentException("Invalid range: " + from + "-" + to);
+		return new CharClass(new int[]{ from, to });
+	}
+
+	/**
+	 * Get the class of all characters except some delimiters, the 
+	 * characters a state skips to. Up to three delimiters are 
+	 * scanned for directly instead of through the class tables.
+	 *
+	 * @param delimiters The characters not in the class
+	 * @param below The characters below this are not in the class either, for instance 0x20 for control characters
+	 * @return The class of all characters except the delimiters and the characters below below
+	 */
+	public static CharClass except(String delimiters, int below){
+		CharClass out = of(delimiters);
+		if (below > 0)
+			out = out.or(range(0, below - 1));
+		out = out.not();
+		if (delimiters.length() == 0 || delimiters.length() > MAX_DELIMITERS)
+			return out;
+		//Repeat the last delimiter, so we can always compare to three
+		char[] d = new char[MAX_DELIMITERS];
+		for (int i = 0; i < d.length; i++)
+			d[i] = delimiters.charAt(Math.min(i, delimiters.length() - 1));
+		return new CharClass(out.ranges, d, below);
+	}
+
+	/**
+	 * @param other The class to add
+	 * @return The class of all characters in either this or the other class
+	 */
+	public CharClass or(CharClass other){
+		int[] out = new int[ranges.length + other.ranges.length];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		//Merge the ranges by start
+		while (i < ranges.length || j < other.ranges.length){
+			int[] next;
+			int k;
+			if (j >= other.ranges.length || (i < ranges.length && ranges[i] <= other.ranges[j])){
+				next = ranges;
+				k = i;
+				i += 2;
+			} else {
+				next = other.ranges;
+				k = j;
+				j += 2;
+			}
+			//Join overlapping and adjacent ranges
+			if (n > 0 && next[k] <= out[n - 1] + 1){
+				out[n - 1] = Math.max(out[n - 1], next[k + 1]);
+			} else {
+				out[n++] = next[k];
+				out[n++] = next[k + 1];
+			}
+		}
+		return new CharClass(Arrays.copyOf(out, n));
+	}
+
+	/**
+	 * @return The class of all characters not in this class
+	 */
+	public CharClass not(){
+		int[] out = new int[ranges.length + 2];
+		int n = 0;
+		int from = 0;
+		for (int i = 0; i < ranges.length; i += 2){
+			if (ranges[i] > from){
+				out[n++] = from;
+				out[n++] = ranges[i] - 1;
+			}
+			from = ranges[i + 1] + 1;
+		}
+		if (from <= MAX){
+			out[n++] = from;
+			out[n++] = MAX;
+		}
+		return new CharClass(Arrays.copyOf(out, n));
+	}
+
+	/**
+	 * Whether or not a character is in this class
+	 *
+	 * @param c The character (or -1 if EOF)
+	 * @return True iff the character is in this class
+	 */
+	public boolean matches(int c){
+		if (c < 64)
+			return c >= 0 && (low & (1L << c)) != 0;
+		if (c < 128)
+			return (high & (1L << (c - 64))) != 0;
+		int lo = 0;
+		int hi = ranges.length / 2 - 1;
+		while (lo <= hi){
+			int mid = (lo + hi) >>> 1;
+			if (c < ranges[2 * mid])
+				hi = mid - 1;
+			else if (c > ranges[2 * mid + 1])
+				lo = mid + 1;
+			else
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Find the first character in a buffer that is not in this class
+	 *
+	 * @param buffer The characters to scan
+	 * @param from The index of the first character to scan
+	 * @param to The index after the last character to scan
+	 * @return The index of the first character not in this class (or to if all are)
+	 */
+	public int scan(char[] buffer, int from, int to){
+		if (delimiters != null)
+			return skip(buffer, from, to);
+		long low = this.low;
+		long high = this.high;
+		while (from < to){
+			char c = buffer[from];
+			if (c < 64){
+				if ((low & (1L << c)) == 0)
+					return from;
+			} else if (c < 128){
+				if ((high & (1L << (c - 64))) == 0)
+					return from;
+			} else if (!matches(c)){
+				return from;
+			}
+			from++;
+		}
+		return to;
+	}
+
+	/**
+	 * Find the first delimiter or character below the bound in a buffer
+	 *
+	 * @param buffer The characters to scan
+	 * @param from The index of the first character to scan
+	 * @param to The index after the last character to scan
+	 * @return The index of the first character not in this class (or to if all are)
+	 */
+	private int skip(char[] buffer, int from, int to){
+		char d0 = delimiters[0];
+		char d1 = delimiters[1];
+		char d2 = delimiters[2];
+		int below = this.below;
+		while (from < to){
+			char c = buffer[from];
+			if (c == d0 || c == d1 || c == d2 || c < below)
+				return from;
+			from++;
+		}
+		return to;
+	}
+
+	/**
+	 * Collect the characters for which Character.isWhitespace() holds
+	 */
+	private static CharClass whitespace(){
+		CharClass out = new CharClass(new int[0]);
+		for (int c = 0; c <= Character.MAX_VALUE; c++){
+			if (Character.isWhitespace(c))
+				out = out.or(range(c, c));
+		}
+		return out;
+	}
+
+	@Override
+	public boolean equals(Object other){
+		return other instanceof CharClass && Arrays.equals(ranges, ((CharClass) other).ranges);
+	}
+
+	@Override
+	public int hashCode(){
+		return Arrays.hashCode(ranges);
+	}
+
+}
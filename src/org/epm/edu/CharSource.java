@@ -0,0 +1,81 @@
+package org.epm.edu;
+
+import java.io.IOException;
+
+/**
+ * A block buffered source of characters for the EPM.
+ *
+ * Instead of asking the underlying input for every single
+ * character, a CharSource pulls a large block of characters
+ * into an internal buffer and hands these out one by one.
+ */
+public abstract class CharSource {
+
+	/**
+	 * The amount of characters pulled in at once, if not specified otherwise
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+	char[] buffer;
+	int position = 0;
+	int limit = 0;
+	StructuralIndex index = null;
+
+	/**
+	 * Create a new CharSource with a certain block size
+	 *
+	 * @param blockSize The maximum amount of characters to pull in at once
+	 */
+	protected CharSource(int blockSize){
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		buffer = new char[blockSize];
+	}
+
+	/**
+	 * Read the next character from the buffer, refilling
+	 * the buffer from the underlying input if needed.
+	 *
+	 * @return The read character (or -1 if EOF)
+	 * @throws IOException If the underlying input failed
+	 */
+	public final int read() throws IOException{
+		if (position == limit && !refill())
+			return -1;
+		return buffer[position++];
+	}
+
+	/**
+	 * Throw away the current buffer contents and pull in
+	 * the next block from the underlying input.
+	 *
+	 * @return False iff the underlying input is exhausted
+	 * @throws IOException If the underlying input failed
+	 */
+	final boolean refill() throws IOException{
+		position = 0;
+		limit = 0;
+		int read;
+		do {
+			read = fill(buffer);
+		} while (read == 0);
+		if (read < 0)
+			return false;
+		limit = read;
+		if (index != null)
+			index.index(buffer, 0, limit);
+		return true;
+	}
+
+	/**
+	 * Pull the next block of characters into the given buffer,
+	 * starting at index 0. May block until at least one
+	 * character is available.
+	 *
+	 * @param buffer The buffer to write to
+	 * @return The amount of characters written (or -1 if EOF)
+	 * @throws IOException If the underlying input failed
+	 */
+	protected abstract int fill(char[] buffer) throws IOException;
+
+}
@@ -0,0 +1,73 @@
+package org.epm.edu;
+
+import java.util.ArrayList;
+
+/**
+ * The alternatives of a single OrderedGuess.
+ *
+ * Every alternative is ranked by its position in the
+ * OrderedGuess. StateBuilders leaving an alternative are
+ * deferred until the end of the character. The first 
+ * alternative to be left then decides the choice, if several
+ * are left at the same character the one with the lowest 
+ * rank wins.
+ */
+class Choice {
+
+	private int winner = -1;
+	private int best = Integer.MAX_VALUE;
+	private ArrayList<Deferred> deferred = new ArrayList<Deferred>();
+	
+	/**
+	 * Defer a StateBuilder leaving one of the alternatives
+	 * 
+	 * @param sb The StateBuilder leaving the alternative
+	 * @param rank The rank of the alternative
+	 * @param revisit Whether or not the StateBuilder needs to be fed the current character
+	 * @return True iff this is the first StateBuilder deferred since the last decision
+	 */
+	boolean defer(StateBuilder sb, int rank, boolean revisit){
+		deferred.add(new Deferred(sb, rank, revisit));
+		if (rank < best)
+			best = rank;
+		return deferred.size() == 1;
+	}
+	
+	/**
+	 * Decide the choice, if not decided already
+	 * 
+	 * @return The StateBuilders deferred since the last decision
+	 */
+	ArrayList<Deferred> decide(){
+		if (winner < 0)
+			winner = best;
+		ArrayList<Deferred> out = deferred;
+		deferred = new ArrayList<Deferred>();
+		return out;
+	}
+	
+	/**
+	 * Get the rank of the winning alternative
+	 * 
+	 * @return The rank of the winner (or -1 if undecided)
+	 */
+	int getWinner(){
+		return winner;
+	}
+	
+	/**
+	 * A StateBuilder waiting for the choice to be decided
+	 */
+	static class Deferred {
+		
+		final StateBuilder builder;
+		final int rank;
+		final boolean revisit;
+		
+		Deferred(StateBuilder builder, int rank, boolean revisit){
+			this.builder = builder;
+			this.rank = rank;
+			this.revisit = revisit;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.epm.edu;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A CharSource for input pushed to a ParseSession in chunks of
+ * bytes, see ParseSession.begin(). Every byte is handed out as a
+ * single character (0-255), like StreamCharSource does.
+ *
+ * The session only reads from it while it has characters left
+ * or has ended, so it never has to wait for input.
+ */
+class ChunkCharSource extends CharSource {
+
+	private boolean ended = false;
+
+	/**
+	 * Create a new ChunkCharSource taking in a certain
+	 * amount of bytes at once
+	 *
+	 * @param blockSize The maximum amount of bytes to take in at once
+	 */
+	ChunkCharSource(int blockSize){
+		super(blockSize);
+	}
+
+	/**
+	 * Take in the next block of a chunk, replacing the
+	 * characters in the buffer
+	 *
+	 * @param chunk The chunk to take the bytes from
+	 */
+	void push(ByteBuffer chunk){
+		int n = Math.min(chunk.remaining(), buffer.length);
+		for (int i = 0; i < n; i++)
+			buffer[i] = (char) (chunk.get() & 0xFF);
+		position = 0;
+		limit = n;
+		if (index != null)
+			index.index(buffer, 0, limit);
+	}
+
+	/**
+	 * Mark the end of the input, once the buffered
+	 * characters are read we are at EOF
+	 */
+	void end(){
+		ended = true;
+	}
+
+	/**
+	 * Start a new input
+	 */
+	void clear(){
+		position = 0;
+		limit = 0;
+		ended = false;
+	}
+
+	/**
+	 * Whether or not we need another chunk before
+	 * the next character can be read
+	 *
+	 * @return True iff the buffer is empty and the input has not ended
+	 */
+	boolean isWaiting(){
+		return position == limit && !ended;
+	}
+
+	@Override
+	protected int fill(char[] buffer){
+		return -1;
+	}
+
+}
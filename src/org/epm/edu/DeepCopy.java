@@ -0,0 +1,20 @@
+package org.epm.edu;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a field of a StateAdapter to be copied by value
+ * instead of by reference when the state is copied.
+ *
+ * Supported are StringBuilders, States, arrays, and
+ * Collections and Maps with a zero argument constructor.
+ * Null values stay null, any other value is shared.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DeepCopy {
+
+}
@@ -4,34 +4,66 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.Set;
-import java.util.Stack;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.epm.edu.statechanges.*;
 
 /**
  * The main class to keep track of parse states
+ * 
+ * The registered States and the settings of a machine
+ * are frozen into a Grammar, which is parsed by a ParseSession.
+ * A machine reuses a single session for its own parse() calls,
+ * use newSession() or a SessionPool to parse on several threads.
  */
 public class EasyParseMachine {
 
+	//Inputs of a batch being parsed or waiting to be handed out, see parseAll()
+	private static final int MAX_PENDING = 1024;
+	
+	//Executor shared by all batches without an executor of their own, see setExecutor()
+	private static ExecutorService sharedExecutor = null;
+
 	//Attributes
-	private InputStream feeder;
-	private HashMap<Long, Stack<State>> states = new HashMap<Long, Stack<State>>();
+	private CharSource feeder;
 	private HashMap<String, State> backupStates = new HashMap<String, State>();
+	private ArrayList<String> stateNames = new ArrayList<String>();
+	private HashMap<String, Integer> stateIds = new HashMap<String, Integer>();
+	private BitSet referencedIds = new BitSet();
+	private Grammar grammar = null;
+	private ParseSession session = null;
 	
 	//Settings
 	private boolean compressWhitespace = false;
 	private boolean cWKeepNewlines = false;
+	private boolean adaptivePrediction = false;
+	private boolean mergeEquivalent = false;
+	private int memoSize = 0;
+	private StructuralIndex structuralIndex = null;
+	private int maxBuilders = Integer.MAX_VALUE;
+	private Comparator<StateBuilder> priority = null;
 	private PrintStream debugStream;
-	
-	//States
-	private boolean isAmbiguous = false;
-	private LinkedList<String> deletionSnapshot = new LinkedList<String>();
+	private ExecutorService executor = null;
+	private ParseListener listener = null;
 	
 	/**
 	 * Create a new EPM without an InputStream,
@@ -46,7 +78,7 @@ public class EasyParseMachine {
 	 * @param is The InputStream to read characters from
 	 */
 	public EasyParseMachine(InputStream is){
-		feeder = is;
+		setInput(is);
 	}
 	
 	/**
@@ -55,7 +87,7 @@ public class EasyParseMachine {
 	 * @param s The String to construct an InputStream from
 	 */
 	public EasyParseMachine(String s){
-		feeder = new ByteArrayInputStream(s.getBytes());
+		setInput(s);
 	}
 	
 	/**
@@ -64,7 +96,11 @@ public class EasyParseMachine {
 	 * @param is The InputStream to use
 	 */
 	public void setInput(InputStream is){
-		feeder = is;
+		// An EPMDebugStream reports the line being parsed, do not read ahead
+		if (is instanceof EPMDebugStream)
+			feeder = new StreamCharSource(is, 1);
+		else
+			feeder = new StreamCharSource(is);
 	}
 	
 	/**
@@ -73,7 +109,16 @@ public class EasyParseMachine {
 	 * @param s The String to use
 	 */
 	public void setInput(String s){
-		feeder = new ByteArrayInputStream(s.getBytes());
+		feeder = new StreamCharSource(new ByteArrayInputStream(s.getBytes()));
+	}
+	
+	/**
+	 * Set the CharSource to read characters from
+	 * 
+	 * @param source The CharSource to use
+	 */
+	public void setInput(CharSource source){
+		feeder = source;
 	}
 	
 	/**
@@ -110,6 +155,107 @@ public class EasyParseMachine {
 		cWKeepNewlines = keepNewlines;
 	}
 	
+	/**
+	 * Learn which guessed states fail right away on which
+	 * characters and skip these in later Guesses. 
+	 * A prediction is only made after a state failed on its first 
+	 * character several times and is dropped once it does not.
+	 * 
+	 * Only states that implement LearnableState are learned, as
+	 * their first response depends on nothing but the character.
+	 * This is off by default.
+	 * 
+	 * @param predict Whether to learn and skip failing guesses
+	 */
+	public void setAdaptivePrediction(boolean predict){
+		adaptivePrediction = predict;
+	}
+	
+	/**
+	 * Merge StateBuilders that entered the same state at the
+	 * same offset and whose states are equivalent (see 
+	 * MergeableState). Only one of them is fed, the others are
+	 * parked until it leaves the state, after which they continue
+	 * on their own stacks. This keeps nested ambiguity from 
+	 * multiplying the amount of StateBuilders.
+	 * Off by default.
+	 * 
+	 * @param merge Whether or not to merge equivalent StateBuilders
+	 */
+	public void setMergeEquivalent(boolean merge){
+		mergeEquivalent = merge;
+	}
+	
+	/**
+	 * Remember which states were entered at which offset, so a
+	 * StateBuilder entering a state that another StateBuilder 
+	 * entered at the same offset can reuse its sub-parse: it is 
+	 * parked until the other StateBuilder leaves the state, after
+	 * which it continues with the same subtree.
+	 * As all StateBuilders read the input in lockstep, this 
+	 * only applies to StateBuilders entering a state at about the same time.
+	 * Off (0) by default.
+	 * 
+	 * @param maxEntries The maximum amount of remembered states, a state entered later may replace an earlier one
+	 */
+	public void setMemoize(int maxEntries){
+		if (maxEntries < 0)
+			throw new IllegalArgumentException("Memo size must not be negative: " + maxEntries);
+		memoSize = maxEntries;
+	}
+	
+	/**
+	 * Put a hard limit on the amount of StateBuilders alive
+	 * at the same time. Whenever there are more after a character,
+	 * the StateBuilders ranked lowest are dropped. Dropped 
+	 * StateBuilders do not show up in the deletion snapshot.
+	 * 
+	 * @param max The maximum amount of StateBuilders
+	 * @param priority The ranking of the StateBuilders, highest first 
+	 * (or null to keep the oldest StateBuilders)
+	 */
+	public void setMaxBuilders(int max, Comparator<StateBuilder> priority){
+		if (max < 1)
+			throw new IllegalArgumentException("Maximum amount of builders must be positive: " + max);
+		this.maxBuilders = max;
+		this.priority = priority;
+	}
+	
+	/**
+	 * Index the structural characters of the input while reading it,
+	 * so states can skip to the next structural character at once
+	 * through a SkipToStructural. Off (null) by default.
+	 * 
+	 * @param index The index to use (or null to turn it off)
+	 */
+	public void setStructuralIndex(StructuralIndex index){
+		this.structuralIndex = index;
+	}
+	
+	/**
+	 * Set the executor to parse the inputs of a batch on, see parseAll().
+	 * The executor is not shut down by the EPM. By default (null) all
+	 * batches share an executor that runs on virtual threads if the JDK
+	 * has these, or on a daemon thread for every processor otherwise.
+	 * 
+	 * @param executor The executor to use (or null for the default)
+	 */
+	public void setExecutor(ExecutorService executor){
+		this.executor = executor;
+	}
+	
+	/**
+	 * Report the states a parse goes through to a listener, instead
+	 * of building a parse tree, see ParseSession.setListener().
+	 * Sessions created while a listener is set all report to it.
+	 * Off (null) by default.
+	 * 
+	 * @param listener The listener to report to (or null to build parse trees)
+	 */
+	public void setListener(ParseListener listener){
+		this.listener = listener;
+	}
+	
 	/**
 	 * Register a State instance for use by the EPM,
 	 * bind it to a name that is different than the
@@ -122,6 +268,8 @@ public class EasyParseMachine {
 	 */
 	public void addState(State s, String override){
 		backupStates.put(override, s);
+		assignStateId(override);
+		grammar = null;
 	}
 
 	/**
@@ -132,378 +280,378 @@ public class EasyParseMachine {
 	 */
 	public void removeState(String s){
 		backupStates.remove(s);
+		grammar = null;
 	}
 	
 	/**
-	 * Reset the Machine to the initial state before
-	 * any character was read
+	 * Get the id of a state name, for use in the id based
+	 * Goto, Guess and Split state changes.
+	 * A state name is bound to the same id for the lifetime
+	 * of this EPM. The state does not need to be registered yet,
+	 * but it does need to be registered by the time the
+	 * grammar is frozen.
+	 * 
+	 * @param name The state name (override)
+	 * @return The id for the state name
 	 */
-	public void resetMachine(){
-		states.clear();
+	public int getStateId(String name){
+		int id = assignStateId(name);
+		referencedIds.set(id);
+		return id;
 	}
 	
 	/**
-	 * Get all the registered state names
+	 * Get the id of a state name, handing out
+	 * the next free id if it did not have one yet
 	 * 
-	 * @return All of the state names in use
+	 * @param name The state name (override)
+	 * @return The id for the state name
 	 */
-	public Collection<String> getStateNames(){
-		return backupStates.keySet();
+	private int assignStateId(String name){
+		Integer id = stateIds.get(name);
+		if (id == null){
+			id = stateNames.size();
+			stateNames.add(name);
+			stateIds.put(name, id);
+		}
+		return id;
 	}
 	
 	/**
-	 * Get all the state instances in use
+	 * Freeze the currently registered States into a Grammar.
+	 * The Grammar is reused until a State is added or removed.
 	 * 
-	 * @return All of the States in use
+	 * @return The frozen Grammar
+	 * @throws UnknownStateChangeException If an id was handed out for a state that is not registered
 	 */
-	public Collection<State> getStates(){
-		return backupStates.values();
+	public Grammar freeze(){
+		if (grammar != null)
+			return grammar;
+		State[] prototypes = new State[stateNames.size()];
+		for (int id = 0; id < prototypes.length; id++){
+			prototypes[id] = backupStates.get(stateNames.get(id));
+			if (prototypes[id] == null && referencedIds.get(id))
+				throw new UnknownStateChangeException("Unknown state: " + stateNames.get(id));
+		}
+		grammar = new Grammar(stateNames.toArray(new String[prototypes.length]), prototypes, new HashMap<String, Integer>(stateIds));
+		return grammar;
 	}
 	
 	/**
-	 * Retrieve a localized State for a certain context
+	 * Create a new session of the currently registered States, with
+	 * the current settings and its own StructuralIndex. Later changes
+	 * to this EPM do not affect the session.
 	 * 
-	 * @param sb The state building context
-	 * @param state The state to retrieve
-	 * @return The State belonging to the given StateBuilder or null if state == null
+	 * @return A fresh ParseSession
+	 * @throws UnknownStateChangeException If an id was handed out for a state that is not registered
 	 */
-	private State getNewState(StateBuilder sb, String state){
-		if (state == null)
-			return null;
-		if (!states.containsKey(sb.getBuilderId()))
-			states.put(sb.getBuilderId(), new Stack<State>());
-		if (!backupStates.containsKey(state))
-			throw new UnknownStateChangeException("Unknown state: " + state);
-		states.get(sb.getBuilderId()).push(backupStates.get(state).copy());
-		return states.get(sb.getBuilderId()).peek();
-	}
-	
-	private State getNewState(StateBuilder parent, StateBuilder sb, String state){
-		Stack<State> stack = states.get(parent.getBuilderId());
-		Stack<State> child = new Stack<State>();
-		Iterator<State> oldies = stack.iterator();
-		while (oldies.hasNext()){
-			child.add(oldies.next().copy());
-		}
-		states.put(sb.getBuilderId(), child); 
-		return getNewState(sb, state);
+	public ParseSession newSession(){
+		return configure(new ParseSession(freeze()), structuralIndex == null ? null : structuralIndex.copy());
 	}
 	
 	/**
-	 * Re-enter a previous state
+	 * Copy our settings to a session
 	 * 
-	 * @param sb The state building context
-	 * @return The State the StateBuilder was previously in or null if on top
+	 * @param s The session to configure
+	 * @param index The StructuralIndex for the session (or null if none)
+	 * @return The configured session
 	 */
-	private State getPreviousState(StateBuilder sb){
-		if (!states.containsKey(sb.getBuilderId()))
-			return null;
-		Stack<State> stack = states.get(sb.getBuilderId());
-		if (stack.isEmpty())
-			return null;
-		stack.pop();
-		if (stack.isEmpty())
-			return null;
-		return stack.peek();
+	private ParseSession configure(ParseSession s, StructuralIndex index){
+		s.compressWhitespace = compressWhitespace;
+		s.cWKeepNewlines = cWKeepNewlines;
+		s.adaptivePrediction = adaptivePrediction;
+		s.mergeEquivalent = mergeEquivalent;
+		s.memoSize = memoSize;
+		s.structuralIndex = index;
+		s.maxBuilders = maxBuilders;
+		s.priority = priority;
+		s.debugStream = debugStream;
+		s.listener = listener;
+		return s;
 	}
 	
 	/**
-	 * Start reading the input from the previously specified
-	 * InputStream given a certain starting State with a certain
-	 * state name override. 
+	 * Get our own session for a parse, set to our
+	 * input and current settings
 	 * 
 	 * @param sName The starting state name (override)
-	 * @return The TreeModel of the parsed input
-	 * @throws IOException If the InputStream failed
-	 * @throws NullPointerException If someone forgot to set the InputStream 
+	 * @return The session to parse with
 	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	public ParseTreeModel parse(String sName) throws IOException, UnknownStateChangeException{
+	private ParseSession session(String sName){
 		if (!backupStates.containsKey(sName))
 			throw new UnknownStateChangeException("Unknown start state: " + sName);
-		
-		Set<StateBuilder> builders = new LinkedHashSet<StateBuilder>();
-		StateBuilder startBuilder = new StateBuilder(null, sName);
-		State startState = getNewState(startBuilder, sName);
-		startBuilder.setState(startState);
-		builders.add(startBuilder);
-		
-		isAmbiguous = false;
-		boolean justReadWhitespace = false;
-		
-		int f = -1;
-		do {
-			f = feeder.read();
-			
-			if (compressWhitespace && f!=-1 && Character.isWhitespace((char) f) && !(cWKeepNewlines && (char) f == '\n')){
-				if (justReadWhitespace){
-					continue;
-				} else {
-					f = ' ';
-					justReadWhitespace = true;
-				}
-			} else {
-				justReadWhitespace = false;
-			}
-			
-			debugln("[EPM] FEED: "+(char)f);
-			
-			Set<StateBuilder> deletions = new LinkedHashSet<StateBuilder>();
-			Set<StateBuilder> additions = new LinkedHashSet<StateBuilder>();
-			Stack<StateBuilder> gotos = new Stack<StateBuilder>();
-			
-			//Give everyone a new character
-			for (StateBuilder sb : builders){
-				IStateChange sc = sb.feed(f);
-				handleChange(sb, sc, additions, deletions, gotos);
-			}
-			
-			debugln("[EPM] SECONDARY FEED: "+(char)f);
-			
-			while (!additions.isEmpty() || !deletions.isEmpty() || !gotos.isEmpty()){
-				//Add requested new builders
-				for (StateBuilder sb : additions)
-					builders.add(sb);
-				additions.clear();
-		
-				//Delegate the character to the next consumer for all 
-				//builders
-				while (!gotos.isEmpty()){
-					StateBuilder sb = gotos.pop();
-					IStateChange sc = sb.feed(f);
-					handleChange(sb, sc, additions, deletions, gotos);
-				}
-				
-				//Remove all requested builder removals
-				deletionSnapshot.clear();
-				for (StateBuilder sb : deletions){
-					builders.remove(sb);
-					deletionSnapshot.add(sb.getCurrentNodeName());
-					states.remove(sb.getBuilderId());
-				}
-				deletions.clear();
-			}
-
-			if (debugStream != null){
-				debugln("[EPM] FEED DONE: # builders left: " + builders.size());
-				for (StateBuilder sb : builders){
-					if (sb.getCurrentNodeName() != null){
-						debuglnt("[" + sb.getBuilderId() + "]: "+sb.currentNodeInfo());
-					} else
-						debuglnt("$EPM_END_OF_INPUT");
-				}
-				debugln("");
-			}
-		} while (f!=-1&&builders.size()>0);
-
-		if (builders.size() == 0){
-			return null;
-		}
-		
-		if (builders.size() > 1)
-			isAmbiguous = true;
-		
-		return new ParseTreeModel(builders.iterator().next().getRealRoot());
+		Grammar g = freeze();
+		if (session == null || session.getGrammar() != g)
+			session = new ParseSession(g);
+		configure(session, structuralIndex);
+		session.setInput(feeder);
+		return session;
 	}
 	
 	/**
-	 * Has the previous parse() call left the machine
-	 * in an ambiguous state
+	 * Reset the Machine to the initial state before
+	 * any character was read
+	 */
+	public void resetMachine(){
+		if (session != null)
+			session.reset();
+	}
+	
+	/**
+	 * Get all the registered state names
 	 * 
-	 * @return If there are multiple parse trees possible
+	 * @return All of the state names in use
 	 */
-	public boolean isAmbiguous(){
-		return isAmbiguous;
+	public Collection<String> getStateNames(){
+		return backupStates.keySet();
 	}
 	
 	/**
-	 * Retrieve the last set of removed states before ending parsing.
-	 * Useful to retrieve expected states after failing.
+	 * Get all the state instances in use
 	 * 
-	 * @return The collection of state names we removed last
+	 * @return All of the States in use
 	 */
-	public Collection<String> getDeletionSnapshot(){
-		return deletionSnapshot;
+	public Collection<State> getStates(){
+		return backupStates.values();
+	}
+	
+	/**
+	 * Start reading the input from the previously specified
+	 * input given a certain starting State with a certain
+	 * state name override. 
+	 * 
+	 * @param sName The starting state name (override)
+	 * @return The TreeModel of the parsed input
+	 * @throws IOException If the input failed
+	 * @throws NullPointerException If someone forgot to set the input 
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	public ParseTreeModel parse(String sName) throws IOException, UnknownStateChangeException{
+		return session(sName).parse(sName);
 	}
 	
 	/**
-	 * Delegate a StateChange provided by a StateBuilder
+	 * Read a file through memory mapping given a certain starting
+	 * State with a certain state name override.
+	 * This replaces the previously specified input.
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The change in state we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
+	 * @param file The file to parse
+	 * @param sName The starting state name (override)
+	 * @return The TreeModel of the parsed input
+	 * @throws IOException If the file could not be read
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, IStateChange isc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		if (isc instanceof Accept)
-			handleChange(sb, (Accept) isc, add, del, gotos);
-		else if (isc instanceof Closure)
-			handleChange(sb, (Closure) isc, add, del, gotos);
-		else if (isc instanceof Consume)
-			handleChange(sb, (Consume) isc, add, del, gotos);
-		else if (isc instanceof Fail)
-			handleChange(sb, (Fail) isc, add, del, gotos);
-		else if (isc instanceof Goto)
-			handleChange(sb, (Goto) isc, add, del, gotos);
-		else if (isc instanceof Guess)
-			handleChange(sb, (Guess) isc, add, del, gotos);
-		else if (isc instanceof Split)
-			handleChange(sb, (Split) isc, add, del, gotos);
+	public ParseTreeModel parse(Path file, String sName) throws IOException, UnknownStateChangeException{
+		feeder = null;
+		return session(sName).parse(file, sName);
 	}
 	
 	/**
-	 * Handle an Accept update.
-	 * We have to revisit the current character.
+	 * Parse an input that is mostly a single list of elements, like
+	 * a JSON array of records, on several threads at once, see
+	 * ParseSession.parseParallel().
+	 * This replaces the previously specified input.
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The Accept we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
+	 * @param sName The starting state name (override)
+	 * @param parentName The name of the state (override) holding the elements
+	 * @param splitter The splitter finding the elements in the input
+	 * @param pool The pool to parse the chunks on
+	 * @return The TreeModel of the parsed input
+	 * @throws IOException If the input failed
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, Accept sc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		sb.setState(getPreviousState(sb));
-		debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " -> ACCEPT(" + sc.getContent() + ")");
-		gotos.add(sb);
+	public ParseTreeModel parseParallel(String sName, String parentName, ElementSplitter splitter, ForkJoinPool pool) throws IOException, UnknownStateChangeException{
+		ParseSession s = session(sName);
+		feeder = null;
+		return s.parseParallel(sName, parentName, splitter, pool);
 	}
 	
 	/**
-	 * Handle a Closure update.
+	 * Parse an input on an executor, see parseAsync() with a timeout
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The Closure we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
+	 * @param input The input to parse
+	 * @param sName The starting state name (override)
+	 * @param executor The executor to parse on
+	 * @return The future TreeModel of the parsed input
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, Closure sc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		sb.setState(getPreviousState(sb));
-		debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " CLOSURE(" + sc.getContent() + ")");
+	public CompletableFuture<ParseTreeModel> parseAsync(CharSource input, String sName, Executor executor){
+		return parseAsync(input, sName, executor, 0, TimeUnit.NANOSECONDS);
 	}
 	
 	/**
-	 * Handle a Consume update. We don't need to do anything.
+	 * Parse an input on an executor, in a session of its own with
+	 * the states and settings of this EPM at the time of the call.
+	 * 
+	 * Cancelling the future stops the parse within about 
+	 * ParseSession.CHECK_INTERVAL characters or steps of StateBuilders.
+	 * A parse that runs out of time completes the future with a
+	 * ParseCancelledException.
+	 * A future completed with null did not parse, like parse().
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The Consume we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
+	 * @param input The input to parse
+	 * @param sName The starting state name (override)
+	 * @param executor The executor to parse on
+	 * @param timeout The maximum time the parse may take, from the moment it starts (or 0 for no limit)
+	 * @param unit The unit of the timeout
+	 * @return The future TreeModel of the parsed input
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, Consume sc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " CONSUME");
+	public CompletableFuture<ParseTreeModel> parseAsync(CharSource input, final String sName, Executor executor, long timeout, TimeUnit unit){
+		if (!backupStates.containsKey(sName))
+			throw new UnknownStateChangeException("Unknown start state: " + sName);
+		final ParseSession s = newSession();
+		s.setTimeout(timeout, unit);
+		s.setInput(input);
+		final CompletableFuture<ParseTreeModel> out = new CompletableFuture<ParseTreeModel>();
+		out.whenComplete(new BiConsumer<ParseTreeModel, Throwable>(){
+			@Override
+			public void accept(ParseTreeModel model, Throwable error) {
+				if (out.isCancelled())
+					s.cancel();
+			}
+		});
+		try {
+			executor.execute(new Runnable(){
+				@Override
+				public void run() {
+					if (out.isDone())
+						return;
+					try {
+						out.complete(s.parse(sName));
+					} catch (Throwable t) {
+						out.completeExceptionally(t);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			out.completeExceptionally(e);
+		}
+		return out;
 	}
 	
 	/**
-	 * Handle a Fail update. Remove this StateBuilder.
+	 * Parse a batch of inputs on the executor, see setExecutor(), 
+	 * and hand the results to a consumer in order of input.
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The Fail we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
+	 * @param inputs The inputs to parse
+	 * @param sName The starting state name (override)
+	 * @param consumer The consumer of the results, called on this thread
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, Fail sc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " FAIL");
-		del.add(sb);
+	public void parseAll(Iterable<? extends CharSource> inputs, String sName, Consumer<ParseResult> consumer){
+		parseAll(inputs, sName, true, consumer);
 	}
 	
 	/**
-	 * Handle a Goto update. We revisit this builder and feed the same character
-	 * to the goto state.
+	 * Parse a batch of inputs on the executor, see setExecutor(), 
+	 * and hand the results to a consumer.
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The Goto we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
-	 * @throws UnknownStateChangeException If the specified state name is not registered
+	 * Every input is parsed by a session of its own, with the states
+	 * and settings of this EPM at the time of the call. An input that 
+	 * does not parse or fails does not stop the batch, see ParseResult.
+	 * 
+	 * @param inputs The inputs to parse
+	 * @param sName The starting state name (override)
+	 * @param ordered Whether to hand out the results in order of input, instead of as soon as they are done
+	 * @param consumer The consumer of the results, called on this thread
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, Goto sc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " GOTO " + sc.getNextState());
-		if (!backupStates.containsKey(sc.getNextState()))
-			throw new UnknownStateChangeException("Unknown state: " + sc.getNextState());
-		
-		sb.setState(getNewState(sb, (sc.getNextState())));
-		gotos.add(sb);
+	public void parseAll(Iterable<? extends CharSource> inputs, String sName, boolean ordered, Consumer<ParseResult> consumer){
+		Batch batch = batch(inputs, sName, ordered);
+		try {
+			while (batch.hasNext())
+				consumer.accept(batch.next());
+		} finally {
+			batch.close();
+		}
 	}
 	
 	/**
-	 * Handle a Guess update. We revisit the ambiguous builders and feed the same character
-	 * to these.
+	 * Parse a batch of inputs on the executor, see setExecutor() and
+	 * parseAll(). The inputs are parsed as the Stream is consumed,
+	 * close the Stream to stop parsing early.
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The Guess we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
-	 * @throws UnknownStateChangeException If a specified state name is not registered, or if there are no states to split into
+	 * @param inputs The inputs to parse
+	 * @param sName The starting state name (override)
+	 * @param ordered Whether to hand out the results in order of input, instead of as soon as they are done
+	 * @return The Stream of results
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, Guess sc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " GUESS " + toString(sc.getNextStates()));
-		Collection<StateBuilder> nbuilders = sb.split(sc.getNextStates());
-		for (StateBuilder nsb : nbuilders)
-			nsb.setState(getNewState(sb, nsb, nsb.getCurrentNodeName()));
-		add.addAll(nbuilders);
-		gotos.addAll(nbuilders);
-		del.add(sb);
+	public Stream<ParseResult> parseAll(Iterable<? extends CharSource> inputs, String sName, boolean ordered){
+		final Batch batch = batch(inputs, sName, ordered);
+		int characteristics = Spliterator.NONNULL | (ordered ? Spliterator.ORDERED : 0);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batch, characteristics), false)
+				.onClose(new Runnable(){
+					@Override
+					public void run() {
+						batch.close();
+					}
+				});
 	}
 	
 	/**
-	 * Handle a Split update. We do not revisit the new ambiguous StateBuilders. 
+	 * Start parsing a batch of inputs
 	 * 
-	 * @param sb The source StateBuilder of this state change
-	 * @param isc The Split we are to handle
-	 * @param add The Set of additions we can add to if we need to add StateBuilders
-	 * @param del The Set of deletions we can add to if we need to remove StateBuilders
-	 * @param gotos The Set of StateBuilders that needs to be revisited given the current input
-	 * @throws UnknownStateChangeException If a specified state name is not registered, or if there are no states to split into
+	 * @param inputs The inputs to parse
+	 * @param sName The starting state name (override)
+	 * @param ordered Whether to hand out the results in order of input
+	 * @return The batch to iterate over
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
 	 */
-	private void handleChange(StateBuilder sb, Split sc, Set<StateBuilder> add, Set<StateBuilder> del, Stack<StateBuilder> gotos){
-		debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " SPLIT " + toString(sc.getNextStates()));
-		Collection<StateBuilder> nbuilders = sb.split(sc.getNextStates());
-		for (StateBuilder nsb : nbuilders)
-			nsb.setState(getNewState(sb, nsb, nsb.getCurrentNodeName()));
-		add.addAll(nbuilders);
-		del.add(sb);
+	private Batch batch(Iterable<? extends CharSource> inputs, String sName, boolean ordered){
+		if (!backupStates.containsKey(sName))
+			throw new UnknownStateChangeException("Unknown start state: " + sName);
+		SessionPool pool = new SessionPool(this);
+		return new Batch(inputs.iterator(), sName, pool, executor != null ? executor : sharedExecutor(), ordered, MAX_PENDING);
 	}
 	
 	/**
-	 * Convert a collection of Strings to a single String
+	 * Get the executor shared by all batches, which starts a virtual 
+	 * thread for every task, or runs on a daemon thread for every processor
+	 * if the JDK has no virtual threads. It is never shut down, so a batch
+	 * that is dropped without being closed leaves no threads of its own behind.
 	 * 
-	 * @param states The String Collection to implode
-	 * @return The String representation
+	 * @return The shared executor
 	 */
-	private String toString(Collection<String> states){
-		String out = "[";
-		for (String s : states){
-			if ("[".equals(out)){
-				out += s;
-			} else {
-				out += ", " + s;
-			}
+	private static synchronized ExecutorService sharedExecutor(){
+		if (sharedExecutor != null)
+			return sharedExecutor;
+		try {
+			sharedExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			sharedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory(){
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread out = new Thread(r, "EPM batch");
+					out.setDaemon(true);
+					return out;
+				}
+			});
 		}
-		return out + "]";
+		return sharedExecutor;
 	}
 	
 	/**
-	 * Print a line to the debug stream
+	 * Has the previous parse() call left the machine
+	 * in an ambiguous state
 	 * 
-	 * @param message The message to print
+	 * @return If there are multiple parse trees possible
 	 */
-	private void debugln(String message){
-		if (debugStream != null)
-			debugStream.println(message.replace("\n", "\\n").replace("\t", "\\t").replace("\r", "\\r"));
+	public boolean isAmbiguous(){
+		return session != null && session.isAmbiguous();
 	}
 	
 	/**
-	 * Print a line preceded by a tab-character to the debug stream 
+	 * Retrieve the last set of removed states before ending parsing.
+	 * Useful to retrieve expected states after failing.
 	 * 
-	 * @param message The message to print
+	 * @return The collection of state names we removed last
 	 */
-	private void debuglnt(String message){
-		if (debugStream != null)
-			debugStream.println("\t" + message.replace("\n", "\\n").replace("\t", "\\t").replace("\r", "\\r"));
+	public Collection<String> getDeletionSnapshot(){
+		if (session == null)
+			return Collections.emptyList();
+		return session.getDeletionSnapshot();
 	}
 }
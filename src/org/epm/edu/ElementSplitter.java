@@ -0,0 +1,102 @@
+package org.epm.edu;
+
+import java.util.Arrays;
+
+/**
+ * Finds the boundaries between the elements of a list in
+ * the input, see EasyParseMachine.parseParallel().
+ *
+ * A list is opened and closed by structural characters at a
+ * certain nesting depth, like the brackets of a JSON array,
+ * and its elements are separated by another structural character
+ * at that depth. Characters inside strings are never boundaries,
+ * see StructuralIndex.
+ *
+ * A splitter uses its StructuralIndex, so it can only be
+ * used by a single thread at once.
+ */
+public class ElementSplitter {
+
+	private final StructuralIndex index;
+	private final CharClass open;
+	private final CharClass close;
+	private final char separator;
+	private final int depth;
+
+	/**
+	 * Create a new ElementSplitter
+	 *
+	 * @param index The index to find the structural characters with
+	 * @param open The characters opening a level of nesting
+	 * @param close The characters closing a level of nesting
+	 * @param separator The character separating the elements
+	 * @param depth The nesting depth of the elements, 1 for the elements of a top level list
+	 */
+	public ElementSplitter(StructuralIndex index, String open, String close, char separator, int depth){
+		if (depth < 1)
+			throw new IllegalArgumentException("Depth must be positive: " + depth);
+		this.index = index;
+		this.open = CharClass.of(open);
+		this.close = CharClass.of(close);
+		this.separator = separator;
+		this.depth = depth;
+	}
+
+	/**
+	 * Create a splitter for the elements of a top level JSON array
+	 *
+	 * @return A new ElementSplitter for JSON
+	 */
+	public static ElementSplitter json(){
+		return new ElementSplitter(StructuralIndex.json(), "[{", "]}", ',', 1);
+	}
+
+	/**
+	 * Find the boundaries of the list in the input. There
+	 * has to be exactly one list at our depth.
+	 *
+	 * @param input The input
+	 * @param length The amount of characters in the input
+	 * @return The offsets of the character opening the list, of every separator and
+	 * of the character closing the list (or null if there is no single list at our depth)
+	 */
+	public int[] split(char[] input, int length){
+		index.reset();
+		index.index(input, 0, length);
+		int[] out = new int[16];
+		int n = 0;
+		int level = 0;
+		boolean closed = false;
+		for (int i = index.next(0, length); i < length; i = index.next(i + 1, length)){
+			char c = input[i];
+			if (open.matches(c)){
+				level++;
+				if (level == depth){
+					if (n > 0)
+						return null;
+					out[n++] = i;
+				}
+			} else if (close.matches(c)){
+				if (level == depth){
+					if (n == 0)
+						return null;
+					if (n == out.length)
+						out = Arrays.copyOf(out, 2 * n);
+					out[n++] = i;
+					closed = true;
+				}
+				level--;
+				if (level < 0)
+					return null;
+			} else if (c == separator && level == depth){
+				if (n == out.length)
+					out = Arrays.copyOf(out, 2 * n);
+				out[n++] = i;
+			}
+		}
+		if (!closed || level != 0)
+			return null;
+		return Arrays.copyOf(out, n);
+	}
+
+}
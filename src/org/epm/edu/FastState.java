@@ -0,0 +1,42 @@
+package org.epm.edu;
+
+/**
+ * A state that tells the machine its state change as a packed
+ * int, see FastTransition, instead of as an IStateChange object.
+ * 
+ * The machine calls step() instead of feed() for these states,
+ * so a grammar of FastStates does not have to allocate anything
+ * per character. The content of an Accept or Closure and the
+ * targets of a Guess, OrderedGuess or Split are picked up right
+ * after step() through getContent() and getTargets().
+ * 
+ * feed() should return the same change as step(), see FastStateAdapter.
+ */
+public interface FastState extends State {
+
+	/**
+	 * Receive a character from the feed
+	 * 
+	 * @param c The read character (or -1 if EOF)
+	 * @return The packed state change, see FastTransition
+	 */
+	public int step(int c);
+	
+	/**
+	 * Get the content of the last Accept or Closure
+	 * returned by step()
+	 * 
+	 * @return The content of our node (can be null)
+	 */
+	public String getContent();
+	
+	/**
+	 * Get the ids of the states of the last Guess, 
+	 * OrderedGuess or Split returned by step(), 
+	 * see EasyParseMachine.getStateId()
+	 * 
+	 * @return The ids of the next states
+	 */
+	public int[] getTargets();
+	
+}
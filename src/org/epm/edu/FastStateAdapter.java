@@ -0,0 +1,107 @@
+package org.epm.edu;
+
+import org.epm.edu.statechanges.IStateChange;
+
+/**
+ * Convenience class for smaller FastState implementations.
+ * 
+ * The helper methods fill the side channels and return
+ * the packed change, for instance:
+ * <pre>
+ * public int step(int c) {
+ * 	if (Character.isDigit(c))
+ * 		return consume();
+ * 	return accept(null);
+ * }
+ * </pre>
+ */
+public abstract class FastStateAdapter extends StateAdapter implements FastState {
+
+	private String content = null;
+	private int[] targets = null;
+	
+	public abstract int step(int c);
+	
+	/**
+	 * Unpack our step() for callers of the object protocol
+	 */
+	public IStateChange feed(int c){
+		return FastTransition.toChange(step(c), this);
+	}
+	
+	public String getContent(){
+		return content;
+	}
+	
+	public int[] getTargets(){
+		return targets;
+	}
+	
+	/**
+	 * @param content The content of our node
+	 * @return A packed Accept
+	 */
+	protected int accept(String content){
+		this.content = content;
+		return FastTransition.ACCEPT;
+	}
+	
+	/**
+	 * @param content The content of our node
+	 * @return A packed Closure
+	 */
+	protected int closure(String content){
+		this.content = content;
+		return FastTransition.CLOSURE;
+	}
+	
+	/**
+	 * @return A packed Consume
+	 */
+	protected int consume(){
+		return FastTransition.CONSUME;
+	}
+	
+	/**
+	 * @return A packed Fail
+	 */
+	protected int fail(){
+		return FastTransition.FAIL;
+	}
+	
+	/**
+	 * @param id The id of the next state
+	 * @return A packed Goto
+	 */
+	protected int goTo(int id){
+		return FastTransition.goTo(id);
+	}
+	
+	/**
+	 * @param ids The ids of the next states, only read by the machine
+	 * @return A packed Guess
+	 */
+	protected int guess(int[] ids){
+		this.targets = ids;
+		return FastTransition.GUESS;
+	}
+	
+	/**
+	 * @param ids The ids of the next states in order of preference, only read by the machine
+	 * @return A packed OrderedGuess
+	 */
+	protected int orderedGuess(int[] ids){
+		this.targets = ids;
+		return FastTransition.ORDERED_GUESS;
+	}
+	
+	/**
+	 * @param ids The ids of the next states, only read by the machine
+	 * @return A packed Split
+	 */
+	protected int split(int[] ids){
+		this.targets = ids;
+		return FastTransition.SPLIT;
+	}
+	
+}
@@ -0,0 +1,97 @@
+package org.epm.edu;
+
+import org.epm.edu.statechanges.Accept;
+import org.epm.edu.statechanges.Closure;
+import org.epm.edu.statechanges.Consume;
+import org.epm.edu.statechanges.Fail;
+import org.epm.edu.statechanges.Goto;
+import org.epm.edu.statechanges.Guess;
+import org.epm.edu.statechanges.IStateChange;
+import org.epm.edu.statechanges.OrderedGuess;
+import org.epm.edu.statechanges.Split;
+
+/**
+ * Packs and unpacks the state changes of a FastState.
+ * 
+ * The lowest bits of a packed change hold its kind code,
+ * see IStateChange, the other bits hold the id of the
+ * state to go to for a Goto.
+ */
+public final class FastTransition {
+
+	public static final int KIND_BITS = 4;
+	public static final int KIND_MASK = (1 << KIND_BITS) - 1;
+	
+	public static final int ACCEPT = IStateChange.ACCEPT;
+	public static final int CLOSURE = IStateChange.CLOSURE;
+	public static final int CONSUME = IStateChange.CONSUME;
+	public static final int FAIL = IStateChange.FAIL;
+	public static final int GUESS = IStateChange.GUESS;
+	public static final int SPLIT = IStateChange.SPLIT;
+	public static final int ORDERED_GUESS = IStateChange.ORDERED_GUESS;
+	
+	private FastTransition(){ }
+	
+	/**
+	 * Pack a Goto
+	 * 
+	 * @param id The id of the next state, see EasyParseMachine.getStateId()
+	 * @return The packed Goto
+	 */
+	public static int goTo(int id){
+		if (id < 0)
+			throw new IllegalArgumentException("Invalid state id: " + id);
+		return (id << KIND_BITS) | IStateChange.GOTO;
+	}
+	
+	/**
+	 * Get the kind of a packed change
+	 * 
+	 * @param step The packed change
+	 * @return One of the kind codes of IStateChange
+	 */
+	public static int kind(int step){
+		return step & KIND_MASK;
+	}
+	
+	/**
+	 * Get the id of the next state of a packed Goto
+	 * 
+	 * @param step The packed Goto
+	 * @return The id of the next state
+	 */
+	public static int target(int step){
+		return step >>> KIND_BITS;
+	}
+	
+	/**
+	 * Unpack a change into its IStateChange object
+	 * 
+	 * @param step The packed change
+	 * @param state The FastState that returned the change
+	 * @return The equivalent IStateChange
+	 */
+	public static IStateChange toChange(int step, FastState state){
+		switch (kind(step)){
+		case IStateChange.ACCEPT:
+			return new Accept(state.getContent());
+		case IStateChange.CLOSURE:
+			return new Closure(state.getContent());
+		case IStateChange.CONSUME:
+			return Consume.INSTANCE;
+		case IStateChange.FAIL:
+			return Fail.INSTANCE;
+		case IStateChange.GOTO:
+			return new Goto(target(step));
+		case IStateChange.GUESS:
+			return new Guess(state.getTargets().clone());
+		case IStateChange.ORDERED_GUESS:
+			return new OrderedGuess(state.getTargets().clone());
+		case IStateChange.SPLIT:
+			return new Split(state.getTargets().clone());
+		default:
+			throw new IllegalArgumentException("Unknown state change kind: " + kind(step));
+		}
+	}
+	
+}
@@ -0,0 +1,132 @@
+package org.epm.edu;
+
+/**
+ * A single entry on the (persistent) state stack of a StateBuilder:
+ * a State and the parse tree node it is building. Detached StateBuilders
+ * build no nodes, their frames only keep the name and content.
+ *
+ * Frames are not changed once created, so StateBuilders that
+ * branched off the same StateBuilder can share the frames below
+ * the states they branched into. Only the owner of a frame may
+ * feed its State and add children to its node, any other 
+ * StateBuilder re-entering the frame works on copies.
+ *
+ * The exception are StateBuilders that do exactly what another
+ * StateBuilder does (when merging, or reusing a sub-parse). These
+ * are parked as joiners on the frame of the other StateBuilder, 
+ * and resumed whenever the frame is left.
+ */
+class Frame {
+
+	final State state;
+	final int id;
+	final int offset;
+	final ParseTreeNode node;
+	final String name;
+	final Frame next;
+	final StateBuilder owner;
+	final Choice choice;
+	final int rank;
+	Joiner joiners;
+	boolean claimed = false;
+	boolean left = false;
+	private String content = null;
+	
+	/**
+	 * Create a new Frame on top of another one
+	 * 
+	 * @param state The State of this frame
+	 * @param id The grammar id of the State (or -1 if unknown)
+	 * @param offset The offset of the first character fed to the State
+	 * @param node The parse tree node of this frame (or null if detached)
+	 * @param name The name of the node
+	 * @param next The frame below this one (or null if bottom)
+	 * @param owner The StateBuilder allowed to feed the State
+	 * @param joiners The StateBuilders waiting for this frame to be left (or null if none)
+	 * @param choice The ordered choice this frame is an alternative of (or null if none)
+	 * @param rank The rank of this frame within the choice
+	 */
+	Frame(State state, int id, int offset, ParseTreeNode node, String name, Frame next, StateBuilder owner, Joiner joiners, Choice choice, int rank){
+		this.state = state;
+		this.id = id;
+		this.offset = offset;
+		this.node = node;
+		this.name = name;
+		this.next = next;
+		this.owner = owner;
+		this.joiners = joiners;
+		this.choice = choice;
+		this.rank = rank;
+	}
+	
+	/**
+	 * Get this frame for a certain StateBuilder to re-enter,
+	 * copying the State and node if the StateBuilder does not own it
+	 * 
+	 * @param sb The StateBuilder re-entering this frame
+	 * @return A frame owned by the StateBuilder
+	 */
+	Frame claim(StateBuilder sb){
+		if (owner == sb)
+			return this;
+		claimed = true;
+		Frame out = new Frame(state.copy(), id, offset, node == null ? null : node.branch(), name, next, sb, joiners, choice, rank);
+		out.content = content;
+		return out;
+	}
+	
+	/**
+	 * Get the content of the node of this frame
+	 * 
+	 * @return The content (or null if none was set)
+	 */
+	String getContent(){
+		return node == null ? content : node.getContent();
+	}
+	
+	/**
+	 * Set the content of the node of this frame
+	 * 
+	 * @param content The content of the node
+	 */
+	void setContent(String content){
+		if (node == null)
+			this.content = content;
+		else
+			node.setContent(content);
+	}
+	
+	/**
+	 * Park a StateBuilder on this frame. Copies of this frame
+	 * claimed before do not resume the StateBuilder.
+	 * 
+	 * @param sb The StateBuilder to park
+	 * @param children The amount of children of our node the StateBuilder already has
+	 */
+	void park(StateBuilder sb, int children){
+		joiners = new Joiner(sb, children, joiners);
+	}
+	
+	/**
+	 * A StateBuilder parked on a frame, in a persistent list
+	 */
+	static class Joiner {
+		
+		final StateBuilder builder;
+		final int children;
+		final Joiner next;
+		
+		/**
+		 * Park a StateBuilder
+		 * 
+		 * @param builder The StateBuilder to park
+		 * @param children The amount of children of the frame node the StateBuilder already has
+		 * @param next The other joiners (or null if none)
+		 */
+		Joiner(StateBuilder builder, int children, Joiner next){
+			this.builder = builder;
+			this.children = children;
+			this.next = next;
+		}
+	}
+}
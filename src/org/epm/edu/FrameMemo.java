@@ -0,0 +1,76 @@
+package org.epm.edu;
+
+import java.util.Arrays;
+
+/**
+ * The Frames entered by StateBuilders, by the id of their
+ * state and their offset, see EasyParseMachine.setMemoize().
+ *
+ * Every (id, offset) key is packed into a long and hashed onto
+ * a single slot of an array, so looking up or remembering a Frame
+ * does not allocate. A Frame replaces the Frame in its slot, so
+ * the Frames entered most recently are remembered.
+ */
+class FrameMemo {
+
+	private long[] keys = new long[0];
+	private Frame[] frames = new Frame[0];
+	private int mask = 0;
+
+	/**
+	 * Forget all Frames and make room for a certain amount of Frames
+	 *
+	 * @param maxEntries The maximum amount of Frames to remember
+	 */
+	void clear(int maxEntries){
+		int capacity = maxEntries == 0 ? 0 : Integer.highestOneBit(maxEntries);
+		if (capacity != frames.length){
+			keys = new long[capacity];
+			frames = new Frame[capacity];
+			mask = capacity - 1;
+		} else {
+			Arrays.fill(frames, null);
+		}
+	}
+
+	/**
+	 * Get the remembered Frame of a state entered at an offset
+	 *
+	 * @param id The id of the state
+	 * @param offset The offset the state was entered at
+	 * @return The Frame (or null if none is remembered)
+	 */
+	Frame get(int id, int offset){
+		long key = key(id, offset);
+		int slot = slot(key);
+		return frames[slot] != null && keys[slot] == key ? frames[slot] : null;
+	}
+
+	/**
+	 * Remember a Frame by the id of its state and its offset
+	 *
+	 * @param frame The Frame to remember
+	 */
+	void put(Frame frame){
+		long key = key(frame.id, frame.offset);
+		int slot = slot(key);
+		keys[slot] = key;
+		frames[slot] = frame;
+	}
+
+	/**
+	 * Pack a state id and offset into a single key
+	 */
+	private static long key(int id, int offset){
+		return ((long) id << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Spread a key over the slots
+	 */
+	private int slot(long key){
+		int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+}
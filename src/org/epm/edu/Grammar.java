@@ -0,0 +1,164 @@
+package org.epm.edu;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.epm.edu.statechanges.UnknownStateChangeException;
+
+/**
+ * A frozen set of registered States.
+ *
+ * Every state name is resolved to a dense integer id
+ * once, so the EPM can look up the State belonging to
+ * a state change by indexing an array.
+ *
+ * A Grammar also learns which guessed LearnableStates fail
+ * right away on which (ASCII) characters, so the EPM can skip
+ * these the next time, see EasyParseMachine.setAdaptivePrediction().
+ * This is shared by all parses using the Grammar and safe
+ * to use from several threads.
+ *
+ * Other than that a Grammar never changes, so a single Grammar
+ * can be used by any amount of ParseSessions at once. Its
+ * registered States are only ever copied, never fed.
+ */
+public class Grammar {
+
+	private final String[] names;
+	private final State[] prototypes;
+	private final HashMap<String, Integer> ids;
+	
+	/**
+	 * The amount of times a state needs to fail on its first
+	 * character before we predict it to fail on that character
+	 */
+	static final int PREDICTION_THRESHOLD = 8;
+	
+	/**
+	 * Every so many predictions a session explores the state
+	 * anyway, to verify the prediction still holds
+	 */
+	static final int VERIFICATION_INTERVAL = 64;
+	
+	private static final int CHARACTERS = 129;
+	private static final int SURVIVED = -1;
+	
+	private final AtomicIntegerArray failures;
+	
+	/**
+	 * Create a new Grammar
+	 * 
+	 * @param names The state name for every id
+	 * @param prototypes The registered State for every id (null if unregistered)
+	 * @param ids The id for every state name
+	 */
+	Grammar(String[] names, State[] prototypes, HashMap<String, Integer> ids){
+		this.names = names;
+		this.prototypes = prototypes;
+		this.ids = ids;
+		this.failures = new AtomicIntegerArray(prototypes.length * CHARACTERS);
+	}
+	
+	/**
+	 * Get the id of a registered state name
+	 * 
+	 * @param name The state name (override)
+	 * @return The id of the state
+	 * @throws UnknownStateChangeException If the state name is not registered
+	 */
+	public int getStateId(String name){
+		Integer id = ids.get(name);
+		if (id == null || prototypes[id] == null)
+			throw new UnknownStateChangeException("Unknown state: " + name);
+		return id;
+	}
+	
+	/**
+	 * Whether or not a state name is registered
+	 * 
+	 * @param name The state name (override)
+	 * @return True iff the state name is bound to a registered State
+	 */
+	public boolean hasState(String name){
+		Integer id = ids.get(name);
+		return id != null && prototypes[id] != null;
+	}
+	
+	/**
+	 * Get the state name (override) belonging to an id
+	 * 
+	 * @param id The id of the state
+	 * @return The name of the state
+	 * @throws UnknownStateChangeException If the id is not registered
+	 */
+	public String getStateName(int id){
+		getPrototype(id);
+		return names[id];
+	}
+	
+	/**
+	 * Get the registered State belonging to an id
+	 * 
+	 * @param id The id of the state
+	 * @return The registered State
+	 * @throws UnknownStateChangeException If the id is not registered
+	 */
+	public State getPrototype(int id){
+		if (id < 0 || id >= prototypes.length || prototypes[id] == null)
+			throw new UnknownStateChangeException("Unknown state id: " + id);
+		return prototypes[id];
+	}
+	
+	/**
+	 * Whether or not we can learn the first response of
+	 * states to a character, only EOF and ASCII are tracked
+	 * 
+	 * @param c The character (or -1 if EOF)
+	 * @return True iff c is -1 or ASCII
+	 */
+	boolean isPredictable(int c){
+		return c >= -1 && c < CHARACTERS - 1;
+	}
+	
+	/**
+	 * Record the response of a freshly entered state to the
+	 * first character it was fed
+	 * 
+	 * @param id The id of the state
+	 * @param c The predictable character
+	 * @param failed Whether the state failed on the character
+	 */
+	void learn(int id, int c, boolean failed){
+		int index = id * CHARACTERS + c + 1;
+		if (!failed){
+			failures.set(index, SURVIVED);
+			return;
+		}
+		int count = failures.get(index);
+		if (count != SURVIVED && count < PREDICTION_THRESHOLD)
+			failures.compareAndSet(index, count, count + 1);
+	}
+	
+	/**
+	 * Whether or not a freshly entered state is predicted to
+	 * fail on a character. Sessions withhold every so many
+	 * predictions so they get verified, see VERIFICATION_INTERVAL.
+	 * 
+	 * @param id The id of the state
+	 * @param c The predictable character
+	 * @return True iff the state can be skipped
+	 */
+	boolean predictsFail(int id, int c){
+		return failures.get(id * CHARACTERS + c + 1) >= PREDICTION_THRESHOLD;
+	}
+	
+	/**
+	 * Get the amount of ids in use, the highest
+	 * id is size() - 1
+	 * 
+	 * @return The amount of ids
+	 */
+	public int size(){
+		return prototypes.length;
+	}
+}
@@ -0,0 +1,16 @@
+package org.epm.edu;
+
+/**
+ * A state whose fresh copies respond to their first character
+ * based on that character alone, not on their fields, the input
+ * before them or anything outside the state.
+ *
+ * With adaptive prediction enabled, the machine learns which
+ * characters these states fail on right away and skips them in
+ * later Guesses, see EasyParseMachine.setAdaptivePrediction().
+ * Other states are always entered, so a skipped state can never
+ * change the outcome of a parse.
+ */
+public interface LearnableState extends State {
+
+}
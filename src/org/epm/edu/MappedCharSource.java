@@ -0,0 +1,72 @@
+package org.epm.edu;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A CharSource reading a file through memory mapping.
+ * Every byte is handed out as a single character (0-255).
+ *
+ * The file is mapped one window at a time, so files larger
+ * than a single MappedByteBuffer can hold (2GB) can be read.
+ * Bytes are widened straight from the mapped window into the
+ * character buffer, without an intermediate byte buffer.
+ */
+public class MappedCharSource extends CharSource{
+
+	/**
+	 * The size of a single mapped window, if not specified otherwise
+	 */
+	public static final long DEFAULT_WINDOW_SIZE = 1L << 28;
+	
+	private final FileChannel channel;
+	private final long windowSize;
+	private MappedByteBuffer window = null;
+	private long windowStart = 0;
+	private int windowPosition = 0;
+	
+	/**
+	 * Map a given FileChannel
+	 *
+	 * @param channel The FileChannel to map
+	 */
+	public MappedCharSource(FileChannel channel){
+		this(channel, DEFAULT_WINDOW_SIZE, DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * Map a given FileChannel with a certain window size
+	 *
+	 * @param channel The FileChannel to map
+	 * @param windowSize The maximum amount of bytes to map at once
+	 * @param blockSize The maximum amount of bytes to hand to the EPM at once
+	 */
+	public MappedCharSource(FileChannel channel, long windowSize, int blockSize){
+		super(blockSize);
+		if (windowSize < 1 || windowSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Window size must be between 1 and " + Integer.MAX_VALUE + ": " + windowSize);
+		this.channel = channel;
+		this.windowSize = windowSize;
+	}
+
+	@Override
+	protected int fill(char[] buffer) throws IOException {
+		if (window == null || windowPosition == window.capacity()){
+			if (window != null)
+				windowStart += window.capacity();
+			long size = Math.min(windowSize, channel.size() - windowStart);
+			if (size <= 0)
+				return -1;
+			window = channel.map(MapMode.READ_ONLY, windowStart, size);
+			windowPosition = 0;
+		}
+		int read = Math.min(buffer.length, window.capacity() - windowPosition);
+		for (int i = 0; i < read; i++)
+			buffer[i] = (char) (window.get(windowPosition + i) & 0xFF);
+		windowPosition += read;
+		return read;
+	}
+
+}
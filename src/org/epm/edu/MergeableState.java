@@ -0,0 +1,22 @@
+package org.epm.edu;
+
+/**
+ * A state that can tell whether another state is in
+ * the same internal state.
+ * 
+ * With merging enabled, the machine merges StateBuilders
+ * that entered equivalent states at the same position in
+ * the input, see EasyParseMachine.setMergeEquivalent().
+ */
+public interface MergeableState extends State {
+
+	/**
+	 * Whether or not another state responds exactly the same
+	 * as this state to any further input.
+	 * 
+	 * @param other The State to compare to
+	 * @return True iff both states are interchangeable
+	 */
+	public boolean isEquivalent(State other);
+	
+}
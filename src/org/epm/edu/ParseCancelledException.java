@@ -0,0 +1,14 @@
+package org.epm.edu;
+
+/**
+ * Thrown by a parse that was cancelled, interrupted or ran
+ * out of time, see ParseSession.cancel() and setTimeout()
+ */
+public class ParseCancelledException extends RuntimeException{
+
+	private static final long serialVersionUID = 1L;
+
+	public ParseCancelledException(String msg){
+		super(msg);
+	}
+}
@@ -0,0 +1,36 @@
+package org.epm.edu;
+
+/**
+ * An event held back by a StateBuilder until it is the only
+ * StateBuilder left, see ParseListener.
+ *
+ * Events are kept in a persistent list, latest first, so
+ * StateBuilders branched off the same StateBuilder share the 
+ * events from before their branching point.
+ */
+class ParseEvent {
+
+	final boolean enter;
+	final String name;
+	final String content;
+	final int offset;
+	final ParseEvent previous;
+	
+	/**
+	 * Create a new ParseEvent
+	 * 
+	 * @param enter True if a state was entered, false if it was left
+	 * @param name The state name (override)
+	 * @param content The content of the left state (or null if entered)
+	 * @param offset The offset of the event, see ParseListener
+	 * @param previous The event before this one (or null if none)
+	 */
+	ParseEvent(boolean enter, String name, String content, int offset, ParseEvent previous){
+		this.enter = enter;
+		this.name = name;
+		this.content = content;
+		this.offset = offset;
+		this.previous = previous;
+	}
+	
+}
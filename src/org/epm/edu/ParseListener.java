@@ -0,0 +1,46 @@
+package org.epm.edu;
+
+/**
+ * Receives the states a parse goes through as events, instead
+ * of a parse tree, see ParseSession.setListener().
+ * 
+ * While several StateBuilders are alive, their events are held
+ * back. Once a single StateBuilder is left, the events of its
+ * branch are handed over in order, so a listener only ever sees
+ * the states of one parse. Offsets count the characters fed 
+ * from the start of the input.
+ * 
+ * If the input does not parse, the states entered before it 
+ * failed may have been reported without being left.
+ */
+public interface ParseListener {
+
+	/**
+	 * A state was entered
+	 * 
+	 * @param stateName The state name (override)
+	 * @param offset The offset of the first character fed to the state
+	 */
+	public void onEnter(String stateName, int offset);
+	
+	/**
+	 * A state was left through an Accept or Closure
+	 * 
+	 * @param stateName The state name (override)
+	 * @param content The content of the state
+	 * @param offset The offset after the last character consumed by the state
+	 */
+	public void onExit(String stateName, String content, int offset);
+	
+	/**
+	 * Several StateBuilders were alive, but only one is left. 
+	 * Called before the held back events of that StateBuilder.
+	 * At the end of an ambiguous input the first StateBuilder is 
+	 * taken, see ParseSession.isAmbiguous().
+	 * 
+	 * @param alternatives The most StateBuilders alive at once since the previous events
+	 * @param offset The offset of the character at which one was left
+	 */
+	public void onAmbiguityResolved(int alternatives, int offset);
+	
+}
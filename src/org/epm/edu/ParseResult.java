@@ -0,0 +1,106 @@
+package org.epm.edu;
+
+import java.util.Collection;
+
+/**
+ * The outcome of parsing a single input of a batch,
+ * see EasyParseMachine.parseAll().
+ *
+ * An input either parsed into a tree, did not parse (the
+ * model is null and the deletion snapshot tells what was
+ * expected), or failed with an error.
+ */
+public class ParseResult {
+
+	private final int index;
+	private final CharSource input;
+	private final ParseTreeModel model;
+	private final boolean ambiguous;
+	private final Collection<String> deletionSnapshot;
+	private final Exception error;
+
+	/**
+	 * Create a new ParseResult
+	 *
+	 * @param index The position of the input in the batch
+	 * @param input The input
+	 * @param model The TreeModel of the parsed input (or null if it did not parse)
+	 * @param ambiguous Whether there were multiple parse trees possible
+	 * @param deletionSnapshot The last set of removed states
+	 * @param error The error the parse failed with (or null if none)
+	 */
+	ParseResult(int index, CharSource input, ParseTreeModel model, boolean ambiguous, Collection<String> deletionSnapshot, Exception error){
+		this.index = index;
+		this.input = input;
+		this.model = model;
+		this.ambiguous = ambiguous;
+		this.deletionSnapshot = deletionSnapshot;
+		this.error = error;
+	}
+
+	/**
+	 * Get the position of the input in the batch, starting at 0
+	 *
+	 * @return The index of the input
+	 */
+	public int getIndex(){
+		return index;
+	}
+
+	/**
+	 * Get the input this is the outcome of
+	 *
+	 * @return The input
+	 */
+	public CharSource getInput(){
+		return input;
+	}
+
+	/**
+	 * Get the parse tree of the input
+	 *
+	 * @return The TreeModel of the parsed input (or null if it did not parse or failed)
+	 */
+	public ParseTreeModel getModel(){
+		return model;
+	}
+
+	/**
+	 * Whether or not the input parsed into a tree
+	 *
+	 * @return True iff there is a model
+	 */
+	public boolean isParsed(){
+		return model != null;
+	}
+
+	/**
+	 * Whether or not the parse ended with multiple parse trees possible
+	 *
+	 * @return If there were multiple parse trees possible
+	 */
+	public boolean isAmbiguous(){
+		return ambiguous;
+	}
+
+	/**
+	 * Retrieve the last set of removed states before the parse ended.
+	 * Useful to retrieve expected states after failing.
+	 *
+	 * @return The collection of state names removed last
+	 */
+	public Collection<String> getDeletionSnapshot(){
+		return deletionSnapshot;
+	}
+
+	/**
+	 * Get the error the parse failed with, like an IOException
+	 * of the input or an UnknownStateChangeException
+	 *
+	 * @return The error (or null if the parse did not fail)
+	 */
+	public Exception getError(){
+		return error;
+	}
+
+}
@@ -0,0 +1,1448 @@
+package org.epm.edu;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+import org.epm.edu.statechanges.*;
+
+/**
+ * A single parse, or a series of parses one after the other,
+ * of a frozen Grammar. A session holds everything that changes
+ * while parsing, so it can only be used by a single thread at once.
+ * 
+ * Sessions are cheap compared to their Grammar: create one per thread
+ * or per request through EasyParseMachine.newSession(), or keep them
+ * in a SessionPool. The Grammar is shared by all of them.
+ */
+public class ParseSession {
+
+	//Chunks of a parallel parse, see parseParallel()
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int MIN_CHUNK_SIZE = 4096;
+	
+	//Characters or steps of StateBuilders between checks for cancellation, see cancel()
+	public static final int CHECK_INTERVAL = 1024;
+
+	//Attributes
+	private CharSource feeder;
+	private final Grammar grammar;
+	
+	//Settings, see EasyParseMachine
+	boolean compressWhitespace = false;
+	boolean cWKeepNewlines = false;
+	boolean adaptivePrediction = false;
+	boolean mergeEquivalent = false;
+	int memoSize = 0;
+	StructuralIndex structuralIndex = null;
+	int maxBuilders = Integer.MAX_VALUE;
+	Comparator<StateBuilder> priority = null;
+	PrintStream debugStream = null;
+	ParseListener listener = null;
+	
+	//States
+	private boolean isAmbiguous = false;
+	private ArrayList<String> deletionSnapshot = new ArrayList<String>();
+	private ArrayList<String> pruned = new ArrayList<String>();
+	private int character;
+	private int offset;
+	private char[] single = new char[1];
+	private volatile boolean cancelled = false;
+	private long timeout = 0;
+	private long deadline;
+	private int unchecked;
+	private boolean justReadWhitespace;
+	private int branches;
+	private int predictions = 0;
+	private long builderIds;
+	private ArrayList<ParseEvent> released = new ArrayList<ParseEvent>();
+	
+	//Pushed input, see begin()
+	private ChunkCharSource chunks = null;
+	private boolean done;
+	
+	//Worklists, reused for every character
+	private BuilderList builders = new BuilderList();
+	private BuilderList additions = new BuilderList();
+	private BuilderList deletions = new BuilderList();
+	private BuilderList gotos = new BuilderList();
+	private ArrayList<Choice> choices = new ArrayList<Choice>();
+	
+	//Entered states by (id, offset), see setMemoize()
+	private FrameMemo memo = new FrameMemo();
+	
+	//Ids of the next states of the Guess or Split being handled, see resolve()
+	private int[] targets = new int[8];
+	
+	/**
+	 * Create a new session of a Grammar with the default settings
+	 * 
+	 * @param grammar The frozen Grammar to parse with
+	 */
+	ParseSession(Grammar grammar){
+		this.grammar = grammar;
+	}
+	
+	/**
+	 * Create a new session with the Grammar and settings of
+	 * another session, with its own StructuralIndex
+	 * 
+	 * @param template The session to copy the Grammar and settings of
+	 */
+	ParseSession(ParseSession template){
+		grammar = template.grammar;
+		compressWhitespace = template.compressWhitespace;
+		cWKeepNewlines = template.cWKeepNewlines;
+		adaptivePrediction = template.adaptivePrediction;
+		mergeEquivalent = template.mergeEquivalent;
+		memoSize = template.memoSize;
+		maxBuilders = template.maxBuilders;
+		priority = template.priority;
+		debugStream = template.debugStream;
+		listener = template.listener;
+		if (template.structuralIndex != null)
+			structuralIndex = template.structuralIndex.copy();
+	}
+	
+	/**
+	 * Set the character InputStream for this EPM
+	 * 
+	 * @param is The InputStream to use
+	 */
+	public void setInput(InputStream is){
+		// An EPMDebugStream reports the line being parsed, do not read ahead
+		if (is instanceof EPMDebugStream)
+			feeder = new StreamCharSource(is, 1);
+		else
+			feeder = new StreamCharSource(is);
+	}
+	
+	/**
+	 * Set the character input String
+	 * 
+	 * @param s The String to use
+	 */
+	public void setInput(String s){
+		feeder = new StreamCharSource(new ByteArrayInputStream(s.getBytes()));
+	}
+	
+	/**
+	 * Set the CharSource to read characters from
+	 * 
+	 * @param source The CharSource to use
+	 */
+	public void setInput(CharSource source){
+		feeder = source;
+	}
+	
+	/**
+	 * Get the Grammar this session parses with
+	 * 
+	 * @return The frozen Grammar
+	 */
+	public Grammar getGrammar(){
+		return grammar;
+	}
+	
+	/**
+	 * Reset the session to the initial state before
+	 * any character was read, dropping the input
+	 */
+	public void reset(){
+		feeder = null;
+		cancelled = false;
+		timeout = 0;
+		isAmbiguous = false;
+		deletionSnapshot.clear();
+		clear();
+	}
+	
+	/**
+	 * Clear the worklists of the previous parse
+	 */
+	private void clear(){
+		builders.clear();
+		additions.clear();
+		deletions.clear();
+		gotos.clear();
+		choices.clear();
+		pruned.clear();
+		memo.clear(memoSize);
+	}
+	
+	/**
+	 * Enter a fresh copy of a registered State
+	 * 
+	 * @param sb The state building context
+	 * @param id The id of the state to enter
+	 */
+	private void enterState(StateBuilder sb, int id){
+		sb.enter(grammar.getPrototype(id).copy(), id, offset, grammar.getStateName(id));
+		if (listener != null)
+			sb.record(true, grammar.getStateName(id), null, offset);
+	}
+	
+	/**
+	 * Start reading the input from the previously specified
+	 * input given a certain starting State with a certain
+	 * state name override. 
+	 * 
+	 * @param sName The starting state name (override)
+	 * @return The TreeModel of the parsed input
+	 * @throws IOException If the input failed
+	 * @throws NullPointerException If someone forgot to set the input 
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	public ParseTreeModel parse(String sName) throws IOException, UnknownStateChangeException{
+		start(sName);
+		run();
+		return result();
+	}
+	
+	/**
+	 * Start parsing an input that is pushed to us in chunks through 
+	 * feed(), given a certain starting State with a certain state 
+	 * name override. Like StreamCharSource, every byte is a single 
+	 * character (0-255). This replaces the previously specified input.
+	 * 
+	 * @param sName The starting state name (override)
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	public void begin(String sName) throws UnknownStateChangeException{
+		if (chunks == null)
+			chunks = new ChunkCharSource(CharSource.DEFAULT_BLOCK_SIZE);
+		chunks.clear();
+		feeder = chunks;
+		start(sName);
+		done = false;
+	}
+	
+	/**
+	 * Parse the next chunk of a pushed input, see begin(). This 
+	 * never blocks: the chunk is parsed as far as it goes, after 
+	 * which the StateBuilders wait for the next chunk.
+	 * If the parse already failed, the chunk is left as it is.
+	 * 
+	 * @param chunk The next bytes of the input
+	 * @return False iff the parse failed, see getDeletionSnapshot()
+	 * @throws IllegalStateException If we are not parsing a pushed input
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	public boolean feed(ByteBuffer chunk) throws UnknownStateChangeException{
+		if (feeder == null || feeder != chunks)
+			throw new IllegalStateException("Not parsing a pushed input, see begin()");
+		try {
+			while (!done && chunk.hasRemaining()){
+				chunks.push(chunk);
+				done = run();
+			}
+		} catch (IOException e) {
+			//Pushed chunks do not fail
+			throw new UncheckedIOException(e);
+		}
+		return !done;
+	}
+	
+	/**
+	 * End a pushed input, see begin()
+	 * 
+	 * @return The TreeModel of the parsed input (or null if it did not parse)
+	 * @throws IllegalStateException If we are not parsing a pushed input
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	public ParseTreeModel endOfInput() throws UnknownStateChangeException{
+		if (feeder == null || feeder != chunks)
+			throw new IllegalStateException("Not parsing a pushed input, see begin()");
+		chunks.end();
+		try {
+			if (!done)
+				run();
+		} catch (IOException e) {
+			//Pushed chunks do not fail
+			throw new UncheckedIOException(e);
+		} finally {
+			feeder = null;
+		}
+		return result();
+	}
+	
+	/**
+	 * Set up a parse of the current input
+	 * 
+	 * @param sName The starting state name (override)
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	private void start(String sName){
+		if (!grammar.hasState(sName))
+			throw new UnknownStateChangeException("Unknown start state: " + sName);
+		
+		clear();
+		if (structuralIndex != null){
+			structuralIndex.reset();
+			if (feeder.position < feeder.limit)
+				structuralIndex.index(feeder.buffer, 0, feeder.limit);
+		}
+		feeder.index = structuralIndex;
+		StateBuilder startBuilder = new StateBuilder(grammar.getPrototype(grammar.getStateId(sName)).copy(), sName, listener != null);
+		builders.add(startBuilder);
+		if (listener != null)
+			startBuilder.record(true, sName, null, 0);
+		branches = 1;
+		builderIds = startBuilder.getBuilderId();
+		
+		isAmbiguous = false;
+		offset = -1;
+		justReadWhitespace = false;
+		deadline = System.nanoTime() + timeout;
+		unchecked = CHECK_INTERVAL;
+	}
+	
+	/**
+	 * Feed the input to the StateBuilders until it ends, all StateBuilders
+	 * are gone, or a pushed input has no characters left for now
+	 * 
+	 * @return False iff we wait for the next chunk of a pushed input
+	 * @throws IOException If the input failed
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	private boolean run() throws IOException{
+		int f = -1;
+		do {
+			if (unchecked <= 0)
+				check();
+			
+			if (feeder.position == feeder.limit && feeder == chunks && chunks.isWaiting())
+				return false;
+			
+			//A single builder consuming characters does not need the machine
+			if (builders.size() == 1 && debugStream == null && !compressWhitespace && feeder.position < feeder.limit){
+				f = fastForward(builders.get(0));
+				continue;
+			}
+			
+			f = feeder.read();
+			unchecked--;
+			
+			if (compressWhitespace && f!=-1 && Character.isWhitespace((char) f) && !(cWKeepNewlines && (char) f == '\n')){
+				if (justReadWhitespace){
+					continue;
+				} else {
+					f = ' ';
+					justReadWhitespace = true;
+				}
+			} else {
+				justReadWhitespace = false;
+			}
+			
+			character = f;
+			offset++;
+			if (debugStream != null)
+				debugln("[EPM] FEED: "+(char)f);
+			
+			//Give everyone a new character
+			for (int i = 0; i < builders.size(); i++){
+				StateBuilder sb = builders.get(i);
+				if (--unchecked <= 0)
+					check();
+				step(sb, f);
+			}
+			
+			settle(f);
+		} while (f!=-1&&builders.size()>0);
+		return true;
+	}
+	
+	/**
+	 * Collect the outcome of a finished parse
+	 * 
+	 * @return The TreeModel of the parsed input (or null if it did not parse)
+	 */
+	private ParseTreeModel result(){
+		if (builders.size() == 0){
+			return null;
+		}
+		
+		if (builders.size() > 1)
+			isAmbiguous = true;
+		
+		if (listener != null){
+			branches = Math.max(branches, builders.size());
+			emit(builders.get(0));
+		}
+		
+		ParseTreeNode root = builders.get(0).getRealRoot();
+		root.relink();
+		return new ParseTreeModel(root);
+	}
+	
+	/**
+	 * Feed the current character to all StateBuilders that need to
+	 * revisit it, until no more StateBuilders are added or removed
+	 * 
+	 * @param f The current character (or -1 if EOF)
+	 */
+	private void settle(int f){
+		if (debugStream != null)
+			debugln("[EPM] SECONDARY FEED: "+(char)f);
+		
+		while (!additions.isEmpty() || !deletions.isEmpty() || !gotos.isEmpty() || !choices.isEmpty()){
+			//Add requested new builders
+			builders.addAll(additions);
+			additions.clear();
+	
+			//Delegate the character to the next consumer for all 
+			//builders, until all ordered choices are decided
+			do {
+				while (!gotos.isEmpty()){
+					StateBuilder sb = gotos.pop();
+					if (sb.isDead())
+						continue;
+					if (--unchecked <= 0)
+						check();
+					step(sb, f);
+				}
+				if (!choices.isEmpty())
+					decide();
+			} while (!gotos.isEmpty());
+			
+			//Remove all requested builder removals
+			deletionSnapshot.clear();
+			deletionSnapshot.addAll(pruned);
+			pruned.clear();
+			for (int i = 0; i < deletions.size(); i++){
+				StateBuilder sb = deletions.get(i);
+				deletionSnapshot.add(sb.getCurrentNodeName());
+			}
+			builders.removeDead();
+			deletions.clear();
+		}
+
+		if (debugStream != null){
+			debugln("[EPM] FEED DONE: # builders left: " + builders.size());
+			for (int i = 0; i < builders.size(); i++){
+				StateBuilder sb = builders.get(i);
+				if (sb.getCurrentNodeName() != null){
+					debuglnt("[" + sb.getBuilderId() + "]: "+sb.currentNodeInfo());
+				} else
+					debuglnt("$EPM_END_OF_INPUT");
+			}
+			debugln("");
+		}
+		
+		if (mergeEquivalent && listener == null && f != -1 && builders.size() > 1)
+			merge();
+		if (builders.size() > maxBuilders)
+			limit();
+		if (listener != null)
+			release();
+	}
+	
+	/**
+	 * Hand the held back events to the listener
+	 * once a single StateBuilder is left
+	 */
+	private void release(){
+		if (builders.size() > branches)
+			branches = builders.size();
+		if (builders.size() == 1)
+			emit(builders.get(0));
+	}
+	
+	/**
+	 * Hand the held back events of a StateBuilder to the listener
+	 * 
+	 * @param sb The StateBuilder that is left
+	 */
+	private void emit(StateBuilder sb){
+		if (branches > 1)
+			listener.onAmbiguityResolved(branches, offset);
+		branches = 1;
+		for (ParseEvent e = sb.takeEvents(); e != null; e = e.previous)
+			released.add(e);
+		for (int i = released.size() - 1; i >= 0; i--){
+			ParseEvent e = released.get(i);
+			if (e.enter)
+				listener.onEnter(e.name, e.offset);
+			else
+				listener.onExit(e.name, e.content, e.offset);
+		}
+		released.clear();
+	}
+	
+	/**
+	 * Feed the buffered characters straight to a single StateBuilder,
+	 * for as long as it consumes them. Runs of a ConsumeWhile are 
+	 * skipped without feeding. The first character it does not 
+	 * consume is handled by the machine as usual.
+	 * 
+	 * @param sb The only StateBuilder alive
+	 * @return The last character fed
+	 */
+	private int fastForward(StateBuilder sb){
+		char[] buffer = feeder.buffer;
+		int position = feeder.position;
+		int limit = Math.min(feeder.limit, position + unchecked);
+		int start = position;
+		int c = -1;
+		FastState fs = sb.getFastState();
+		int kind = IStateChange.CONSUME;
+		int step = 0;
+		IStateChange isc = null;
+		while (position < limit){
+			//Skip the characters consumed on behalf of the state
+			CharClass run = sb.getRun();
+			if (run != null){
+				int from = position;
+				position = sb.isStructuralRun() ? feeder.index.next(position, limit) : run.scan(buffer, position, limit);
+				sb.consumed(buffer, from, position - from);
+				if (position > from)
+					c = buffer[position - 1];
+				if (position == limit)
+					break;
+				sb.setRun(null, false);
+			}
+			
+			c = buffer[position++];
+			if (fs != null){
+				step = fs.step(c);
+				kind = FastTransition.kind(step);
+			} else {
+				isc = sb.feed(c);
+				kind = isc.getKind();
+			}
+			if (isRun(kind) && isc != null){
+				character = c;
+				handleChange(sb, isc);
+			} else if (kind != IStateChange.CONSUME){
+				break;
+			}
+		}
+		feeder.position = position;
+		offset += position - start;
+		unchecked -= position - start;
+		if (kind != IStateChange.CONSUME && !(isRun(kind) && isc != null)){
+			character = c;
+			if (fs != null)
+				handleStep(sb, fs, step);
+			else
+				handleChange(sb, isc);
+			settle(c);
+		}
+		return c;
+	}
+	
+	/**
+	 * Stop the current parse, or the next one if we are not
+	 * parsing. The parse throws a ParseCancelledException within
+	 * about CHECK_INTERVAL characters or steps of StateBuilders,
+	 * whichever comes first. Safe to call from any thread.
+	 */
+	public void cancel(){
+		cancelled = true;
+	}
+	
+	/**
+	 * Put a limit on the time a parse may take, after which it
+	 * throws a ParseCancelledException. The time is checked every
+	 * CHECK_INTERVAL characters or steps of StateBuilders. No limit
+	 * (0) by default.
+	 * 
+	 * @param timeout The maximum time a parse may take (or 0 for no limit)
+	 * @param unit The unit of the timeout
+	 */
+	public void setTimeout(long timeout, TimeUnit unit){
+		if (timeout < 0)
+			throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+		this.timeout = unit.toNanos(timeout);
+	}
+	
+	/**
+	 * Report the states the parse goes through to a listener, instead
+	 * of building a parse tree. The TreeModel returned by parse() then
+	 * only holds the root node. Equivalent StateBuilders are not merged 
+	 * or memoized, and parseParallel() parses sequentially.
+	 * 
+	 * @param listener The listener to report to (or null to build parse trees)
+	 */
+	public void setListener(ParseListener listener){
+		this.listener = listener;
+	}
+	
+	/**
+	 * Stop parsing if we were cancelled, interrupted or ran out of time
+	 * 
+	 * @throws ParseCancelledException If we have to stop
+	 */
+	private void check(){
+		unchecked = CHECK_INTERVAL;
+		if (cancelled){
+			cancelled = false;
+			throw new ParseCancelledException("Parse cancelled at offset " + offset);
+		}
+		if (Thread.currentThread().isInterrupted())
+			throw new ParseCancelledException("Parse interrupted at offset " + offset);
+		if (timeout > 0 && System.nanoTime() - deadline > 0)
+			throw new ParseCancelledException("Parse timed out at offset " + offset);
+	}
+	
+	/**
+	 * Whether or not a kind of state change starts a run of
+	 * characters consumed without feeding
+	 * 
+	 * @param kind The kind code of the state change
+	 * @return True iff the kind is a ConsumeWhile or SkipToStructural
+	 */
+	private static boolean isRun(int kind){
+		return kind == IStateChange.CONSUME_WHILE || kind == IStateChange.SKIP_STRUCTURAL;
+	}
+	
+	/**
+	 * Read a file through memory mapping given a certain starting
+	 * State with a certain state name override.
+	 * This replaces the previously specified input.
+	 * 
+	 * @param file The file to parse
+	 * @param sName The starting state name (override)
+	 * @return The TreeModel of the parsed input
+	 * @throws IOException If the file could not be read
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	public ParseTreeModel parse(Path file, String sName) throws IOException, UnknownStateChangeException{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			setInput(new MappedCharSource(channel));
+			return parse(sName);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Parse an input that is mostly a single list of elements, like
+	 * a JSON array of records, on several threads at once.
+	 * 
+	 * The input is split into chunks of elements, see ElementSplitter.
+	 * Every chunk is parsed by its own copy of this session as the input 
+	 * with all other elements left out. The elements of the chunks are then
+	 * put under the first node with the given parent name of the first chunk,
+	 * in order. Hence every element has to parse into a single child of that
+	 * node, and the states from the start state down to the elements may not
+	 * depend on which or how many elements there are, other than through
+	 * their nodes.
+	 * 
+	 * If the input is too small to split, the boundaries of the list cannot be
+	 * determined, any chunk fails or is ambiguous, or the nodes of a chunk that
+	 * do not come from its elements differ from those of the first chunk, the
+	 * input is parsed as usual instead, so the result is always that of parse().
+	 * This replaces the previously specified input.
+	 * 
+	 * @param sName The starting state name (override)
+	 * @param parentName The name of the state (override) holding the elements
+	 * @param splitter The splitter finding the elements in the input
+	 * @param pool The pool to parse the chunks on
+	 * @return The TreeModel of the parsed input
+	 * @throws IOException If the input failed
+	 * @throws UnknownStateChangeException If we were directed to an unregistered state
+	 */
+	public ParseTreeModel parseParallel(String sName, String parentName, ElementSplitter splitter, ForkJoinPool pool) throws IOException, UnknownStateChangeException{
+		if (!grammar.hasState(sName))
+			throw new UnknownStateChangeException("Unknown start state: " + sName);
+		
+		char[] input = readAll();
+		int[] bounds = splitter.split(input, input.length);
+		if (bounds != null && listener == null){
+			int chunks = Math.min(bounds.length - 1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, input.length / MIN_CHUNK_SIZE));
+			if (chunks > 1){
+				ParseTreeModel out = parseChunks(sName, parentName, input, bounds, chunks, pool);
+				if (out != null)
+					return out;
+			}
+		}
+		
+		//Fall back to a sequential parse
+		setInput(new ReaderCharSource(new CharArrayReader(input)));
+		return parse(sName);
+	}
+	
+	/**
+	 * Parse the chunks of a list on a pool and stitch their elements together.
+	 * The children of the parent node that do not come from the elements, like
+	 * nodes of the prefix or suffix, are kept only once, from the first chunk.
+	 * 
+	 * @param sName The starting state name (override)
+	 * @param parentName The name of the state (override) holding the elements
+	 * @param input The complete input
+	 * @param bounds The boundaries of the list and its elements, see ElementSplitter.split()
+	 * @param chunks The amount of chunks to split the elements into
+	 * @param pool The pool to parse the chunks on
+	 * @return The TreeModel of the parsed input (or null if the chunks did not parse unambiguously)
+	 * @throws IOException If we were interrupted
+	 */
+	private ParseTreeModel parseChunks(final String sName, String parentName, char[] input, int[] bounds, int chunks, ForkJoinPool pool) throws IOException{
+		int elements = bounds.length - 1;
+		int prefix = bounds[0] + 1;
+		int suffix = input.length - bounds[elements];
+		ArrayList<ForkJoinTask<ParseTreeModel>> tasks = new ArrayList<ForkJoinTask<ParseTreeModel>>(chunks);
+		ParseSession[] workers = new ParseSession[chunks];
+		int[] sizes = new int[chunks];
+		for (int k = 0; k < chunks; k++){
+			//The input with only the elements of this chunk
+			int from = bounds[elements * k / chunks] + 1;
+			int to = bounds[elements * (k + 1) / chunks];
+			sizes[k] = elements * (k + 1) / chunks - elements * k / chunks;
+			final char[] chunk = new char[prefix + (to - from) + suffix];
+			System.arraycopy(input, 0, chunk, 0, prefix);
+			System.arraycopy(input, from, chunk, prefix, to - from);
+			System.arraycopy(input, bounds[elements], chunk, prefix + (to - from), suffix);
+			
+			final ParseSession worker = new ParseSession(this);
+			worker.debugStream = null;
+			workers[k] = worker;
+			tasks.add(pool.submit(new Callable<ParseTreeModel>(){
+				@Override
+				public ParseTreeModel call() throws Exception {
+					worker.setInput(new ReaderCharSource(new CharArrayReader(chunk)));
+					return worker.parse(sName);
+				}
+			}));
+		}
+		
+		ParseTreeModel[] models = new ParseTreeModel[chunks];
+		ParseTreeNode[] parents = new ParseTreeNode[chunks];
+		try {
+			for (int k = 0; k < chunks; k++){
+				models[k] = tasks.get(k).get();
+				if (models[k] == null || workers[k].isAmbiguous())
+					return null;
+				parents[k] = find(models[k].getRoot(), parentName);
+				if (parents[k] == null)
+					return null;
+			}
+		} catch (ExecutionException e) {
+			//A sequential parse runs into the same problem, or it was a chunk boundary issue
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing in parallel");
+		} finally {
+			for (ForkJoinTask<ParseTreeModel> task : tasks)
+				task.cancel(false);
+		}
+		
+		//Every chunk has the same children around its elements
+		int wrapped = parents[0].getChildCount() - sizes[0];
+		if (wrapped < 0)
+			return null;
+		for (int k = 0; k < chunks; k++){
+			if (parents[k].getChildCount() - sizes[k] != wrapped)
+				return null;
+			if (k > 0 && !sameOutside(models[0].getRoot(), models[k].getRoot(), parents[0], parents[k]))
+				return null;
+		}
+		int leading = leading(parents, wrapped);
+		if (leading < 0)
+			return null;
+		
+		//Put the elements of the other chunks before the trailing children of the first
+		ParseTreeNode parent = parents[0];
+		List<ParseTreeNode> children = parent.childList();
+		ArrayList<ParseTreeNode> trailing = new ArrayList<ParseTreeNode>(
+				children.subList(children.size() - (wrapped - leading), children.size()));
+		for (ParseTreeNode node : trailing)
+			parent.removeChild(node);
+		for (int k = 1; k < chunks; k++){
+			List<ParseTreeNode> chunk = parents[k].childList();
+			for (int i = leading; i < leading + sizes[k]; i++)
+				parent.addChild(chunk.get(i));
+		}
+		for (ParseTreeNode node : trailing)
+			parent.addChild(node);
+		
+		deletionSnapshot.clear();
+		deletionSnapshot.addAll(workers[chunks - 1].getDeletionSnapshot());
+		isAmbiguous = false;
+		return models[0];
+	}
+	
+	/**
+	 * Find how many of the children of the parent nodes that do not come
+	 * from the elements come before the elements. These children have to be
+	 * the same in every chunk.
+	 * 
+	 * @param parents The parent node of every chunk
+	 * @param wrapped The amount of children that do not come from the elements
+	 * @return The amount of leading children (or -1 if the chunks differ)
+	 */
+	private static int leading(ParseTreeNode[] parents, int wrapped){
+		List<ParseTreeNode> first = parents[0].childList();
+		for (int leading = 0; leading <= wrapped; leading++){
+			boolean matches = true;
+			for (int k = 1; k < parents.length && matches; k++){
+				List<ParseTreeNode> other = parents[k].childList();
+				for (int i = 0; i < wrapped && matches; i++){
+					int a = i < leading ? i : first.size() - wrapped + i;
+					int b = i < leading ? i : other.size() - wrapped + i;
+					matches = same(first.get(a), other.get(b));
+				}
+			}
+			if (matches)
+				return leading;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Whether or not two trees are the same, apart from the
+	 * children of a node in each of them
+	 * 
+	 * @param a The root of the first tree
+	 * @param b The root of the second tree
+	 * @param skipA The node of the first tree to ignore the children of
+	 * @param skipB The node of the second tree to ignore the children of
+	 * @return True iff the nodes have the same names, contents and children
+	 */
+	private static boolean sameOutside(ParseTreeNode a, ParseTreeNode b, ParseTreeNode skipA, ParseTreeNode skipB){
+		if ((a == skipA) != (b == skipB))
+			return false;
+		if (!Objects.equals(a.getName(), b.getName()) || !Objects.equals(a.getContent(), b.getContent()))
+			return false;
+		if (a == skipA)
+			return true;
+		if (a.getChildCount() != b.getChildCount())
+			return false;
+		for (int i = 0; i < a.getChildCount(); i++)
+			if (!sameOutside(a.getChildAt(i), b.getChildAt(i), skipA, skipB))
+				return false;
+		return true;
+	}
+	
+	/**
+	 * Whether or not two trees are the same
+	 * 
+	 * @param a The root of the first tree
+	 * @param b The root of the second tree
+	 * @return True iff the nodes have the same names, contents and children
+	 */
+	private static boolean same(ParseTreeNode a, ParseTreeNode b){
+		return sameOutside(a, b, null, null);
+	}
+	
+	/**
+	 * Find the shallowest node with a certain name
+	 * 
+	 * @param root The root of the tree to search
+	 * @param name The name of the node
+	 * @return The shallowest node with the name (or null if there is none)
+	 */
+	private static ParseTreeNode find(ParseTreeNode root, String name){
+		ArrayList<ParseTreeNode> level = new ArrayList<ParseTreeNode>();
+		level.add(root);
+		while (!level.isEmpty()){
+			ArrayList<ParseTreeNode> next = new ArrayList<ParseTreeNode>();
+			for (ParseTreeNode node : level){
+				if (name.equals(node.getName()))
+					return node;
+				next.addAll(node.childList());
+			}
+			level = next;
+		}
+		return null;
+	}
+	
+	/**
+	 * Read all of the remaining input
+	 * 
+	 * @return The remaining input
+	 * @throws IOException If the input failed
+	 */
+	private char[] readAll() throws IOException{
+		char[] out = new char[CharSource.DEFAULT_BLOCK_SIZE];
+		int length = 0;
+		while (feeder.position < feeder.limit || feeder.refill()){
+			int n = feeder.limit - feeder.position;
+			if (length + n > out.length)
+				out = Arrays.copyOf(out, Math.max(2 * out.length, length + n));
+			System.arraycopy(feeder.buffer, feeder.position, out, length, n);
+			length += n;
+			feeder.position = feeder.limit;
+		}
+		return Arrays.copyOf(out, length);
+	}
+	
+	/**
+	 * Has the previous parse() call left the session
+	 * in an ambiguous state
+	 * 
+	 * @return If there are multiple parse trees possible
+	 */
+	public boolean isAmbiguous(){
+		return isAmbiguous;
+	}
+	
+	/**
+	 * Retrieve the last set of removed states before ending parsing.
+	 * Useful to retrieve expected states after failing.
+	 * 
+	 * @return The collection of state names we removed last
+	 */
+	public Collection<String> getDeletionSnapshot(){
+		return deletionSnapshot;
+	}
+	
+	/**
+	 * Feed a character to a StateBuilder and handle its state change,
+	 * through step() if its state is a FastState
+	 * 
+	 * @param sb The StateBuilder to feed
+	 * @param f The current character (or -1 if EOF)
+	 */
+	private void step(StateBuilder sb, int f){
+		CharClass run = sb.getRun();
+		if (run != null){
+			if (sb.isStructuralRun() ? f != -1 && !feeder.index.isStructural(feeder.position - 1) : run.matches(f)){
+				single[0] = (char) f;
+				sb.consumed(single, 0, 1);
+				handleConsume(sb);
+				return;
+			}
+			sb.setRun(null, false);
+		}
+		
+		FastState fs = sb.getFastState();
+		if (fs != null)
+			handleStep(sb, fs, fs.step(f));
+		else
+			handleChange(sb, sb.feed(f));
+	}
+	
+	/**
+	 * Delegate a StateChange provided by a StateBuilder
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param isc The change in state we are to handle
+	 */
+	private void handleChange(StateBuilder sb, IStateChange isc){
+		int kind = isc.getKind();
+		learn(sb, kind);
+		
+		switch (kind){
+		case IStateChange.ACCEPT:
+			handleAccept(sb, ((Accept) isc).getContent());
+			break;
+		case IStateChange.CLOSURE:
+			handleClosure(sb, ((Closure) isc).getContent());
+			break;
+		case IStateChange.CONSUME:
+			handleConsume(sb);
+			break;
+		case IStateChange.CONSUME_WHILE:
+			handleConsumeWhile(sb, ((ConsumeWhile) isc).getCharClass());
+			break;
+		case IStateChange.SKIP_STRUCTURAL:
+			handleSkipToStructural(sb);
+			break;
+		case IStateChange.FAIL:
+			handleFail(sb);
+			break;
+		case IStateChange.GOTO:
+			Goto g = (Goto) isc;
+			handleGoto(sb, g.getNextStateId() < 0 ? grammar.getStateId(g.getNextState()) : g.getNextStateId());
+			break;
+		case IStateChange.GUESS:
+			Guess guess = (Guess) isc;
+			handleGuess(sb, resolve(guess.getNextStateIds(), guess.getNextStates()));
+			break;
+		case IStateChange.ORDERED_GUESS:
+			OrderedGuess ordered = (OrderedGuess) isc;
+			handleOrderedGuess(sb, resolve(ordered.getNextStateIds(), ordered.getNextStates()));
+			break;
+		case IStateChange.SPLIT:
+			Split split = (Split) isc;
+			handleSplit(sb, resolve(split.getNextStateIds(), split.getNextStates()));
+			break;
+		default:
+			throw new UnknownStateChangeException("Unknown state change kind: " + kind);
+		}
+	}
+	
+	/**
+	 * Delegate a packed state change provided by the FastState of a StateBuilder
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param fs The state of the StateBuilder
+	 * @param step The packed change in state we are to handle, see FastTransition
+	 */
+	private void handleStep(StateBuilder sb, FastState fs, int step){
+		int kind = FastTransition.kind(step);
+		learn(sb, kind);
+		
+		switch (kind){
+		case IStateChange.ACCEPT:
+			handleAccept(sb, fs.getContent());
+			break;
+		case IStateChange.CLOSURE:
+			handleClosure(sb, fs.getContent());
+			break;
+		case IStateChange.CONSUME:
+			handleConsume(sb);
+			break;
+		case IStateChange.FAIL:
+			handleFail(sb);
+			break;
+		case IStateChange.GOTO:
+			handleGoto(sb, FastTransition.target(step));
+			break;
+		case IStateChange.GUESS:
+			handleGuess(sb, resolve(fs.getTargets(), null));
+			break;
+		case IStateChange.ORDERED_GUESS:
+			handleOrderedGuess(sb, resolve(fs.getTargets(), null));
+			break;
+		case IStateChange.SPLIT:
+			handleSplit(sb, resolve(fs.getTargets(), null));
+			break;
+		default:
+			throw new UnknownStateChangeException("Unknown state change kind: " + kind);
+		}
+	}
+	
+	/**
+	 * Learn from the first response of a freshly guessed StateBuilder
+	 * 
+	 * @param sb The source StateBuilder of a state change
+	 * @param kind The kind of the state change
+	 */
+	private void learn(StateBuilder sb, int kind){
+		if (sb.getGuessed() >= 0){
+			grammar.learn(sb.getGuessed(), character, kind == IStateChange.FAIL);
+			sb.setGuessed(-1);
+		}
+	}
+	
+	/**
+	 * Handle an Accept update.
+	 * We have to revisit the current character.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param content The content of the accepted node
+	 */
+	private void handleAccept(StateBuilder sb, String content){
+		sb.setContent(content);
+		sb.reset();
+		boolean left = leave(sb, true);
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " -> ACCEPT(" + content + ")");
+		if (left)
+			gotos.add(sb);
+	}
+	
+	/**
+	 * Handle a Closure update.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param content The content of the closed node
+	 */
+	private void handleClosure(StateBuilder sb, String content){
+		sb.setContent(content);
+		leave(sb, false);
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " CLOSURE(" + content + ")");
+	}
+	
+	/**
+	 * Handle a Consume update. We don't need to do anything.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 */
+	private void handleConsume(StateBuilder sb){
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " CONSUME");
+	}
+	
+	/**
+	 * Handle a ConsumeWhile update. The StateBuilder consumes the 
+	 * following characters in the class without feeding them.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param run The class of characters to consume
+	 */
+	private void handleConsumeWhile(StateBuilder sb, CharClass run){
+		sb.setRun(run, false);
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " CONSUME WHILE");
+	}
+	
+	/**
+	 * Handle a SkipToStructural update. The StateBuilder consumes the 
+	 * following characters up to the next structural character
+	 * without feeding them.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @throws UnknownStateChangeException If there is no StructuralIndex
+	 */
+	private void handleSkipToStructural(StateBuilder sb){
+		if (structuralIndex == null)
+			throw new UnknownStateChangeException("SkipToStructural without a StructuralIndex, see setStructuralIndex()");
+		sb.setRun(structuralIndex.getAlphabet(), true);
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " SKIP TO STRUCTURAL");
+	}
+	
+	/**
+	 * Handle a Fail update. Remove this StateBuilder.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 */
+	private void handleFail(StateBuilder sb){
+		sb.reset();
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " FAIL");
+		remove(sb);
+	}
+	
+	/**
+	 * Handle a Goto update. We revisit this builder and feed the same character
+	 * to the goto state.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param id The id of the state to go to
+	 * @throws UnknownStateChangeException If the specified state is not registered
+	 */
+	private void handleGoto(StateBuilder sb, int id){
+		enterState(sb, id);
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " GOTO " + grammar.getStateName(id));
+		if (!reuse(sb))
+			gotos.add(sb);
+	}
+	
+	/**
+	 * Handle a Guess update. We revisit the ambiguous builders and feed the same character
+	 * to these. Guessed PredictiveStates that cannot start with the character are skipped.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param n The amount of guessed states, see resolve()
+	 * @throws UnknownStateChangeException If a specified state is not registered
+	 */
+	private void handleGuess(StateBuilder sb, int n){
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " GUESS " + targetsToString(n));
+		branch(sb, predict(n), true, null);
+	}
+	
+	/**
+	 * Handle an OrderedGuess update. Like a Guess, but the first of the new
+	 * StateBuilders to leave its state wins.
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param n The amount of guessed states in order of preference, see resolve()
+	 * @throws UnknownStateChangeException If a specified state is not registered
+	 */
+	private void handleOrderedGuess(StateBuilder sb, int n){
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " ORDERED GUESS " + targetsToString(n));
+		branch(sb, predict(n), true, new Choice());
+	}
+	
+	/**
+	 * Handle a Split update. We do not revisit the new ambiguous StateBuilders. 
+	 * 
+	 * @param sb The source StateBuilder of this state change
+	 * @param n The amount of states to split into, see resolve()
+	 * @throws UnknownStateChangeException If a specified state is not registered
+	 */
+	private void handleSplit(StateBuilder sb, int n){
+		if (debugStream != null)
+			debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " SPLIT " + targetsToString(n));
+		branch(sb, n, false, null);
+	}
+	
+	/**
+	 * Replace a StateBuilder by a new StateBuilder for every state
+	 * at the start of the targets
+	 * 
+	 * @param sb The StateBuilder to branch off
+	 * @param n The amount of states to branch into, see resolve()
+	 * @param revisit Whether or not the new StateBuilders need to be fed the current character
+	 * @param choice The ordered choice between the states (or null if unordered)
+	 */
+	private void branch(StateBuilder sb, int n, boolean revisit, Choice choice){
+		boolean learn = revisit && adaptivePrediction && grammar.isPredictable(character);
+		for (int i = 0; i < n; i++){
+			int id = targets[i];
+			String name = grammar.getStateName(id);
+			StateBuilder nsb = sb.branch(name, ++builderIds);
+			State s = grammar.getPrototype(id).copy();
+			nsb.setState(s, id, revisit ? offset : offset + 1, choice, i);
+			if (listener != null)
+				nsb.record(true, name, null, revisit ? offset : offset + 1);
+			if (learn && s instanceof LearnableState && !(s instanceof PredictiveState))
+				nsb.setGuessed(id);
+			if (reuse(nsb))
+				continue;
+			additions.add(nsb);
+			if (revisit)
+				gotos.add(nsb);
+		}
+		remove(sb);
+	}
+	
+	/**
+	 * Let a StateBuilder leave its current state. The StateBuilders
+	 * parked on the state are resumed and leave it as well.
+	 * If the state is an alternative of an undecided ordered choice,
+	 * the StateBuilder waits for the choice to be decided instead.
+	 * 
+	 * @param sb The StateBuilder leaving its state
+	 * @param revisit Whether or not the StateBuilders need to be fed the current character
+	 * @return False iff the StateBuilder did not leave its state (yet)
+	 */
+	private boolean leave(StateBuilder sb, boolean revisit){
+		Frame done = sb.getTop();
+		if (done != null){
+			if (done.choice != null){
+				Choice choice = done.choice;
+				if (choice.getWinner() < 0){
+					if (choice.defer(sb, done.rank, revisit))
+						choices.add(choice);
+					return false;
+				} else if (choice.getWinner() != done.rank){
+					remove(sb);
+					return false;
+				}
+			}
+			done.left = true;
+			for (Frame.Joiner j = done.joiners; j != null; j = j.next){
+				StateBuilder nsb = j.builder.resume(done, j.children, ++builderIds);
+				if (debugStream != null)
+					debugln("[EPM] [" + nsb.getBuilderId() + "]: " + nsb.currentNodeInfo() + " RESUMED FROM [" + sb.getBuilderId() + "]");
+				additions.add(nsb);
+				if (leave(nsb, revisit) && revisit)
+					gotos.add(nsb);
+			}
+		}
+		if (listener != null && done != null)
+			sb.record(false, done.name, done.getContent(), revisit ? offset : offset + 1);
+		sb.popState();
+		return true;
+	}
+	
+	/**
+	 * Decide the ordered choices that had alternatives left
+	 * at the current character. The StateBuilders that left the
+	 * winning alternative continue, all StateBuilders in the other
+	 * alternatives are removed.
+	 */
+	private void decide(){
+		for (int i = 0; i < choices.size(); i++){
+			Choice choice = choices.get(i);
+			for (Choice.Deferred d : choice.decide()){
+				if (d.builder.isDead())
+					continue;
+				if (debugStream != null)
+					debugln("[EPM] [" + d.builder.getBuilderId() + "]: " + d.builder.currentNodeInfo() 
+							+ (d.rank == choice.getWinner() ? " WINS" : " LOSES") + " ORDERED GUESS");
+				if (leave(d.builder, d.revisit) && d.revisit)
+					gotos.add(d.builder);
+			}
+			removeLosers(builders, choice);
+			removeLosers(additions, choice);
+		}
+		choices.clear();
+	}
+	
+	/**
+	 * Remove all StateBuilders within a losing alternative of a choice
+	 * 
+	 * @param list The StateBuilders to check
+	 * @param choice The decided choice
+	 */
+	private void removeLosers(BuilderList list, Choice choice){
+		for (int i = 0; i < list.size(); i++){
+			StateBuilder sb = list.get(i);
+			if (!sb.isDead() && sb.hasLost(choice))
+				remove(sb);
+		}
+	}
+	
+	/**
+	 * Drop the lowest ranked StateBuilders until we are 
+	 * within the maximum amount of StateBuilders
+	 */
+	private void limit(){
+		if (priority != null)
+			builders.sort(priority);
+		for (int i = maxBuilders; i < builders.size(); i++){
+			if (debugStream != null)
+				debugln("[EPM] [" + builders.get(i).getBuilderId() + "]: " + builders.get(i).currentNodeInfo() + " DROPPED");
+			builders.get(i).kill();
+		}
+		builders.removeDead();
+	}
+	
+	/**
+	 * Park a StateBuilder that just entered a state on the frame of another
+	 * StateBuilder that entered the same state at the same offset, as long
+	 * as that frame has not been left or re-entered yet. 
+	 * Otherwise remember the frame for the StateBuilders to come.
+	 * 
+	 * @param sb The StateBuilder that just entered a state
+	 * @return True iff the StateBuilder was parked
+	 */
+	private boolean reuse(StateBuilder sb){
+		if (memoSize == 0 || listener != null)
+			return false;
+		Frame entered = sb.getTop();
+		Frame frame = memo.get(entered.id, entered.offset);
+		if (frame != null && !frame.left && !frame.claimed){
+			if (debugStream != null)
+				debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " REUSES [" + frame.owner.getBuilderId() + "]");
+			frame.park(sb, 0);
+			sb.kill();
+			return true;
+		}
+		memo.put(entered);
+		return false;
+	}
+	
+	/**
+	 * Park every StateBuilder on an earlier StateBuilder that
+	 * is equivalent to it
+	 */
+	private void merge(){
+		for (int i = 1; i < builders.size(); i++){
+			StateBuilder sb = builders.get(i);
+			for (int j = 0; j < i; j++){
+				StateBuilder leader = builders.get(j);
+				if (!leader.isDead() && leader.isEquivalent(sb)){
+					if (debugStream != null)
+						debugln("[EPM] [" + sb.getBuilderId() + "]: " + sb.currentNodeInfo() + " MERGED INTO [" + leader.getBuilderId() + "]");
+					leader.join(sb);
+					break;
+				}
+			}
+		}
+		builders.removeDead();
+	}
+	
+	/**
+	 * Leave out the states at the start of the targets that declare 
+	 * they cannot start with the current character or are predicted
+	 * to fail on it, these are recorded as pruned. The targets that 
+	 * can start with the current character are moved to the front.
+	 * 
+	 * @param n The amount of states to guess, see resolve()
+	 * @return The amount of states that can start with the current character
+	 */
+	private int predict(int n){
+		int kept = 0;
+		for (int i = 0; i < n; i++){
+			int id = targets[i];
+			State s = grammar.getPrototype(id);
+			if (s instanceof PredictiveState ? !((PredictiveState) s).canStartWith(character) 
+					: adaptivePrediction && grammar.isPredictable(character) && grammar.predictsFail(id, character)
+						&& ++predictions % Grammar.VERIFICATION_INTERVAL != 0){
+				pruned.add(grammar.getStateName(id));
+				if (debugStream != null)
+					debugln("[EPM] PRUNED " + grammar.getStateName(id));
+			} else {
+				targets[kept++] = id;
+			}
+		}
+		return kept;
+	}
+	
+	/**
+	 * Resolve the next states of a Guess or Split to ids at the
+	 * start of the targets, which are reused for every change
+	 * 
+	 * @param ids The ids of the next states, if given by id
+	 * @param names The names of the next states, if given by name
+	 * @return The amount of next states
+	 * @throws UnknownStateChangeException If a specified state is not registered
+	 */
+	private int resolve(int[] ids, Collection<String> names){
+		int n = ids != null ? ids.length : names.size();
+		if (targets.length < n)
+			targets = new int[Math.max(n, targets.length * 2)];
+		if (ids != null){
+			System.arraycopy(ids, 0, targets, 0, n);
+		} else {
+			int i = 0;
+			for (String name : names)
+				targets[i++] = grammar.getStateId(name);
+		}
+		return n;
+	}
+	
+	/**
+	 * Mark a StateBuilder for removal at the end of the
+	 * current character
+	 * 
+	 * @param sb The StateBuilder to remove
+	 */
+	private void remove(StateBuilder sb){
+		if (sb.isDead())
+			return;
+		sb.kill();
+		deletions.add(sb);
+	}
+	
+	/**
+	 * Convert the state ids at the start of the targets to a single String
+	 * 
+	 * @param n The amount of state ids to implode
+	 * @return The String representation
+	 */
+	private String targetsToString(int n){
+		String out = "[";
+		for (int i = 0; i < n; i++){
+			int id = targets[i];
+			if ("[".equals(out)){
+				out += grammar.getStateName(id);
+			} else {
+				out += ", " + grammar.getStateName(id);
+			}
+		}
+		return out + "]";
+	}
+	
+	/**
+	 * Print a line to the debug stream
+	 * 
+	 * @param message The message to print
+	 */
+	private void debugln(String message){
+		if (debugStream != null)
+			debugStream.println(message.replace("\n", "\\n").replace("\t", "\\t").replace("\r", "\\r"));
+	}
+	
+	/**
+	 * Print a line preceded by a tab-character to the debug stream 
+	 * 
+	 * @param message The message to print
+	 */
+	private void debuglnt(String message){
+		if (debugStream != null)
+			debugStream.println("\t" + message.replace("\n", "\\n").replace("\t", "\\t").replace("\r", "\\r"));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package org.epm.edu;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Parses the chunks of bytes published by a Flow.Publisher as
+ * they arrive, see ParseSession.begin() and feed().
+ *
+ * The chunks are requested one at a time. Once the input fails
+ * to parse, the subscription is cancelled right away. The result
+ * completes when the publisher completes, or exceptionally when
+ * the publisher or the parse fails.
+ */
+public class ParseSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+	private final ParseSession session;
+	private final String start;
+	private final CompletableFuture<ParseTreeModel> result = new CompletableFuture<ParseTreeModel>();
+	private Flow.Subscription subscription = null;
+
+	/**
+	 * Create a new ParseSubscriber. The session may not be
+	 * used for anything else until the result completes.
+	 *
+	 * @param session The session to parse with
+	 * @param sName The starting state name (override)
+	 */
+	public ParseSubscriber(ParseSession session, String sName){
+		this.session = session;
+		this.start = sName;
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription){
+		if (this.subscription != null){
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		try {
+			session.begin(start);
+		} catch (RuntimeException e) {
+			fail(e);
+			return;
+		}
+		subscription.request(1);
+	}
+
+	@Override
+	public void onNext(ByteBuffer chunk){
+		if (result.isDone())
+			return;
+		try {
+			if (session.feed(chunk)){
+				subscription.request(1);
+			} else {
+				subscription.cancel();
+				result.complete(null);
+			}
+		} catch (RuntimeException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public void onError(Throwable error){
+		result.completeExceptionally(error);
+	}
+
+	@Override
+	public void onComplete(){
+		if (result.isDone())
+			return;
+		try {
+			result.complete(session.endOfInput());
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Get the outcome of the parse
+	 *
+	 * @return The future TreeModel of the parsed input (completed with null if it did not parse)
+	 */
+	public CompletableFuture<ParseTreeModel> getResult(){
+		return result;
+	}
+
+	/**
+	 * Stop receiving chunks after the parse failed
+	 *
+	 * @param error The reason the parse failed
+	 */
+	private void fail(RuntimeException error){
+		subscription.cancel();
+		result.completeExceptionally(error);
+	}
+
+}
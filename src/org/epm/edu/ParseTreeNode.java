@@ -15,6 +15,7 @@ public class ParseTreeNode implements TreeNode{
 
 	private String content;
 	private ArrayList<ParseTreeNode> children;
+	private boolean sharedChildren = false;
 	private ParseTreeNode parent;
 	private String name;
 	
@@ -74,6 +75,7 @@ public class ParseTreeNode implements TreeNode{
 	 * @return All the children of this node
 	 */
 	public List<ParseTreeNode> childList(){
+		unshareChildren();
 		return children;
 	}
 
@@ -164,6 +166,7 @@ public class ParseTreeNode implements TreeNode{
 	 * @param node The new child
 	 */
 	public void addChild(ParseTreeNode node){
+		unshareChildren();
 		node.setParent(this);
 		children.add(node);
 	}
@@ -185,6 +188,7 @@ public class ParseTreeNode implements TreeNode{
 	 * @param node The node to decouple
 	 */
 	public void removeChild(ParseTreeNode node){
+		unshareChildren();
 		children.remove(node);
 	}
 	
@@ -204,6 +208,53 @@ public class ParseTreeNode implements TreeNode{
 		return out;
 	}
 	
+	/**
+	 * Create a shallow copy of this node.
+	 * The copy shares the list of children with this node,
+	 * until either of the two adds or removes a child.
+	 * The shared children keep this node as their parent,
+	 * see relink().
+	 * 
+	 * @return The copied node
+	 */
+	public ParseTreeNode branch(){
+		ParseTreeNode out = new ParseTreeNode(name);
+		out.setParent(parent);
+		out.setContent(content);
+		out.children = children;
+		out.sharedChildren = true;
+		sharedChildren = true;
+		return out;
+	}
+	
+	/**
+	 * Make every node in the subtree specified by this
+	 * node the parent of its children again.
+	 * Needed after branch() was used to construct the subtree.
+	 */
+	public void relink(){
+		ArrayList<ParseTreeNode> todo = new ArrayList<ParseTreeNode>();
+		todo.add(this);
+		while (!todo.isEmpty()){
+			ParseTreeNode node = todo.remove(todo.size() - 1);
+			for (ParseTreeNode child : node.children){
+				child.parent = node;
+				todo.add(child);
+			}
+		}
+	}
+	
+	/**
+	 * Get a private copy of our list of children,
+	 * if it is shared with a branch() of this node.
+	 */
+	private void unshareChildren(){
+		if (sharedChildren){
+			children = new ArrayList<ParseTreeNode>(children);
+			sharedChildren = false;
+		}
+	}
+	
 	/**
 	 * Get a pretty representation of this node
 	 * 
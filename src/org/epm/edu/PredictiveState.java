@@ -0,0 +1,24 @@
+package org.epm.edu;
+
+/**
+ * A state that can tell up front which characters it
+ * can start with.
+ * 
+ * When the machine handles a Guess, alternatives that
+ * cannot start with the current character are never
+ * entered. They are reported in the deletion snapshot 
+ * as if they failed.
+ */
+public interface PredictiveState extends State {
+
+	/**
+	 * Whether or not this state can start with a character.
+	 * May only return false if a fresh copy of this state would
+	 * Fail when fed the character.
+	 * 
+	 * @param c The character to start with (or -1 if EOF)
+	 * @return False iff the state would fail on this character
+	 */
+	public boolean canStartWith(int c);
+	
+}
@@ -0,0 +1,39 @@
+package org.epm.edu;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A CharSource reading blocks of characters from a Reader.
+ */
+public class ReaderCharSource extends CharSource{
+
+	private final Reader feeder;
+
+	/**
+	 * Wrap a given Reader
+	 *
+	 * @param reader The Reader to read characters from
+	 */
+	public ReaderCharSource(Reader reader){
+		this(reader, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Wrap a given Reader, reading a certain
+	 * amount of characters at once
+	 *
+	 * @param reader The Reader to read characters from
+	 * @param blockSize The maximum amount of characters to read at once
+	 */
+	public ReaderCharSource(Reader reader, int blockSize){
+		super(blockSize);
+		feeder = reader;
+	}
+
+	@Override
+	protected int fill(char[] buffer) throws IOException {
+		return feeder.read(buffer, 0, buffer.length);
+	}
+
+}
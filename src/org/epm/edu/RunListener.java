@@ -0,0 +1,22 @@
+package org.epm.edu;
+
+/**
+ * A state that wants to receive the characters the machine
+ * consumes on its behalf, see ConsumeWhile and ConsumeUntil.
+ * 
+ * The characters are handed over in one or more chunks, 
+ * in order, before the state is fed its next character.
+ */
+public interface RunListener {
+
+	/**
+	 * Receive a chunk of consumed characters. The array is 
+	 * only valid during this call, do not keep it.
+	 * 
+	 * @param chars The array holding the characters
+	 * @param offset The index of the first character
+	 * @param length The amount of characters
+	 */
+	public void consumed(char[] chars, int offset, int length);
+	
+}
@@ -0,0 +1,48 @@
+package org.epm.edu;
+
+/**
+ * A CharSource handing out the characters of a CharSequence.
+ */
+public class SequenceCharSource extends CharSource{
+
+	private final CharSequence feeder;
+	private int next = 0;
+
+	/**
+	 * Wrap a given CharSequence
+	 *
+	 * @param s The CharSequence to read characters from
+	 */
+	public SequenceCharSource(CharSequence s){
+		this(s, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Wrap a given CharSequence, copying a certain
+	 * amount of characters at once
+	 *
+	 * @param s The CharSequence to read characters from
+	 * @param blockSize The maximum amount of characters to copy at once
+	 */
+	public SequenceCharSource(CharSequence s, int blockSize){
+		super(blockSize);
+		feeder = s;
+	}
+
+	@Override
+	protected int fill(char[] buffer) {
+		int end = Math.min(feeder.length(), next + buffer.length);
+		if (next == end)
+			return -1;
+		if (feeder instanceof String){
+			((String) feeder).getChars(next, end, buffer, 0);
+		} else {
+			for (int i = next; i < end; i++)
+				buffer[i - next] = feeder.charAt(i);
+		}
+		int read = end - next;
+		next = end;
+		return read;
+	}
+
+}
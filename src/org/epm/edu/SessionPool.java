@@ -0,0 +1,88 @@
+package org.epm.edu;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of ParseSessions of a single Grammar, to be shared
+ * by several threads.
+ *
+ * A thread takes a session through acquire(), parses with it
+ * and hands it back through release(). Sessions are created
+ * as needed, so there are never more than the amount of threads
+ * using the pool at once. At most maxIdle sessions are kept
+ * between parses.
+ */
+public class SessionPool {
+
+	private final ParseSession template;
+	private final int maxIdle;
+	private final ConcurrentLinkedQueue<ParseSession> idle = new ConcurrentLinkedQueue<ParseSession>();
+	private final AtomicInteger idleCount = new AtomicInteger(0);
+
+	/**
+	 * Create a new SessionPool for the currently registered States
+	 * and settings of a machine, see EasyParseMachine.newSession().
+	 * Later changes to the machine do not affect the pool.
+	 *
+	 * @param machine The machine to take the Grammar and settings of
+	 * @param maxIdle The maximum amount of sessions kept between parses
+	 */
+	public SessionPool(EasyParseMachine machine, int maxIdle){
+		if (maxIdle < 0)
+			throw new IllegalArgumentException("Maximum amount of idle sessions must not be negative: " + maxIdle);
+		this.template = machine.newSession();
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Create a new SessionPool for the currently registered States
+	 * and settings of a machine, keeping a session for every processor
+	 *
+	 * @param machine The machine to take the Grammar and settings of
+	 */
+	public SessionPool(EasyParseMachine machine){
+		this(machine, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Take a session from the pool, or create one if there is none left.
+	 * Only the calling thread may use it until it is released.
+	 *
+	 * @return A session without input
+	 */
+	public ParseSession acquire(){
+		ParseSession out = idle.poll();
+		if (out == null)
+			return new ParseSession(template);
+		idleCount.decrementAndGet();
+		return out;
+	}
+
+	/**
+	 * Hand a session back to the pool. The session is reset and
+	 * may no longer be used by the caller.
+	 *
+	 * @param session A session taken from this pool
+	 */
+	public void release(ParseSession session){
+		if (session.getGrammar() != template.getGrammar())
+			throw new IllegalArgumentException("Session does not belong to this pool");
+		session.reset();
+		if (idleCount.incrementAndGet() > maxIdle){
+			idleCount.decrementAndGet();
+			return;
+		}
+		idle.offer(session);
+	}
+
+	/**
+	 * Get the Grammar the sessions of this pool parse with
+	 *
+	 * @return The frozen Grammar
+	 */
+	public Grammar getGrammar(){
+		return template.getGrammar();
+	}
+
+}
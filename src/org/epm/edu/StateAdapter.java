@@ -1,14 +1,11 @@
 package org.epm.edu;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-
 import org.epm.edu.statechanges.IStateChange;
 
 /**
  * Convenience class for smaller state implementations
  */
-public abstract class StateAdapter implements State{
+public abstract class StateAdapter implements MergeableState{
 
 	public abstract IStateChange feed(int c);
 
@@ -26,37 +23,29 @@ public abstract class StateAdapter implements State{
 
 	/**
 	 * Copy this state by invoking the constructor without
-	 * parameters and copying over all fields.
+	 * parameters and copying over all fields, including
+	 * inherited ones. Fields marked with DeepCopy are copied 
+	 * by value, all others by reference.
 	 * If the class does not have a zero argument constructor
 	 * this method will have to be overwritten.
 	 * 
 	 * @return A copy of this state
 	 */
 	public State copy(){
-		Constructor<?>[] constructors = getClass().getDeclaredConstructors();
-		State out = null;
-		for (Constructor<?> c : constructors){
-			if (c.getParameterTypes().length == 0)
-				try {
-					c.setAccessible(true);
-					out = (State) c.newInstance();
-				} catch (Exception e) {
-					continue;
-				}
-		}
-		if (out == null)
-			throw new RuntimeException("Could not use generic zero-parameter constructor: Implement " + getClass().getSimpleName() + ".copy()!");
-		Field[] fields = getClass().getDeclaredFields();
-		for (Field f : fields){
-			try{
-				f.setAccessible(true);
-				Object value = f.get(this);
-				f.set(out, value);
-			} catch (Exception e){
-				throw new RuntimeException("Could not copy field(s): Implement " + getClass().getSimpleName() + ".copy()!");
-			}
-		}
-		return out;
+		return StateCopier.of(getClass()).copy(this);
+	}
+	
+	/**
+	 * Compare this state to another state of the same 
+	 * class by comparing all fields, including inherited ones.
+	 * Fields marked with DeepCopy are compared by value, all 
+	 * others by equals().
+	 * 
+	 * @param other The State to compare to
+	 * @return True iff the other state is of our class and has equal fields
+	 */
+	public boolean isEquivalent(State other){
+		return other != null && StateCopier.of(getClass()).equivalent(this, other);
 	}
 	
 }
@@ -1,13 +1,8 @@
 package org.epm.edu;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.concurrent.atomic.AtomicLong;
 
-import org.epm.edu.statechanges.Accept;
-import org.epm.edu.statechanges.Closure;
-import org.epm.edu.statechanges.Fail;
-import org.epm.edu.statechanges.Goto;
 import org.epm.edu.statechanges.IStateChange;
 
 /**
@@ -21,95 +16,244 @@ import org.epm.edu.statechanges.IStateChange;
  * 
  * The StateBuilder maintains a subtree that is attached
  * bottom-up to the non-ambiguous part of the tree.
+ * StateBuilders branched off the same StateBuilder share
+ * the nodes above their branching point, these are only
+ * copied when a StateBuilder finishes a node below them.
  */
 public class StateBuilder {
 
 	private State current;
+	private FastState fast = null;
+	private CharClass run = null;
+	private boolean structural = false;
+	private RunListener listener = null;
+	private Frame top = null;
 	private ParseTreeNode root;
-	private ParseTreeNode node = null;
+	private ParseTreeNode finished = null;
+	private final boolean detached;
+	private ParseEvent events = null;
 	
-	private static AtomicLong ids = new AtomicLong(0);
-	private long myid = 0;
+	private final long myid;
+	private boolean dead = false;
+	private int guessed = -1;
 	
 	/**
 	 * Create a new StateBuilder with a certain starting
-	 * state.
+	 * state. It is numbered 1, the StateBuilders branched
+	 * off it are numbered by the caller, see getBuilderId().
 	 * 
 	 * @param start the start state
 	 */
 	public StateBuilder(State start, String startName){
-		this.current = start;
-		this.root = new ParseTreeNode(startName);
-		this.node = root;
-		
-		myid = ids.incrementAndGet();
+		this(start, startName, false);
 	}
 	
 	/**
 	 * Create a new StateBuilder with a certain starting
-	 * state and a given subtree root.
+	 * state, that may not build a parse tree. Detached
+	 * StateBuilders create no nodes but the root, only
+	 * the names and contents of the states on the stack
+	 * are kept.
+	 * 
+	 * @param start the start state
+	 * @param startName The name of the start state
+	 * @param detached Whether to leave out all nodes but the root
+	 */
+	StateBuilder(State start, String startName, boolean detached){
+		this.detached = detached;
+		this.root = new ParseTreeNode(startName);
+		this.top = new Frame(start, -1, 0, root, startName, null, this, null, null, -1);
+		setCurrent(start);
+		myid = 1;
+	}
+	
+	/**
+	 * Create a new StateBuilder branching off another
+	 * StateBuilder into a new child node. The state for
+	 * the child node still needs to be set.
+	 * 
+	 * @param parent The StateBuilder to branch off
+	 * @param currentName The name of the new child node
+	 * @param id The number of the new StateBuilder
+	 */
+	private StateBuilder(StateBuilder parent, String currentName, long id){
+		detached = parent.detached;
+		ParseTreeNode node = null;
+		if (detached){
+			this.root = parent.root;
+		} else {
+			this.root = parent.top.node;
+			node = new ParseTreeNode(currentName);
+			node.setParent(root);
+		}
+		this.top = new Frame(null, -1, 0, node, currentName, parent.top, this, null, null, -1);
+		events = parent.events;
+		myid = id;
+	}
+	
+	/**
+	 * Create a new StateBuilder resuming a parked StateBuilder
 	 * 
-	 * @param current The start state
-	 * @param root The root to use for this tree
+	 * @param parked The parked StateBuilder
+	 * @param id The number of the new StateBuilder
 	 */
-	protected StateBuilder(State current, String currentName, ParseTreeNode root){
-		this.root = root;
-		this.node = new ParseTreeNode(currentName);
-		node.setParent(this.root);
-		this.current = current;
-		
-		myid = ids.incrementAndGet();
+	private StateBuilder(StateBuilder parked, long id){
+		this.root = parked.root;
+		detached = parked.detached;
+		events = parked.events;
+		myid = id;
 	}
 	
 	/**
-	 * Handle reading a character and update the tree
-	 * according to the state change the user requires.
+	 * Handle reading a character. The machine updates 
+	 * the tree according to the state change the user requires,
+	 * see setContent() and reset().
 	 * 
 	 * @param f The read character (or -1 if EOF)
 	 * @return The statechange to feed to the machine
 	 */
 	public IStateChange feed(int f){
-		IStateChange isc = current.feed(f);
-
-		/*
-		 * Update the tree
-		 */
-		if (isc instanceof Accept || isc instanceof Closure){
-			/*
-			 * If the user accepts the current state,
-			 * we update the subtree by linking its parent
-			 * to our root. Making the top-down tree match
-			 * up with our bottom-up representation. 
-			 */
-			if (isc instanceof Accept){
-				node.setContent(((Accept) isc).getContent());
-			} else {
-				node.setContent(((Closure) isc).getContent());
-			}
-			ParseTreeNode parent = (ParseTreeNode) node.getParent();
-			if (parent != null){
-				if (!parent.hasChild(node))
-					parent.addChild(node);
-			}
-			node = parent;
-		} else if (isc instanceof Goto){
-			/*
-			 * In case of a goto we move into a new node
-			 */
-			Goto got = (Goto) isc;
-			ParseTreeNode child = new ParseTreeNode(got.getNextState());
-			child.setParent(node);
-			node = child;
-		} 
-
-		/*
-		 * Reset the State's internal state upon finishing
-		 * with the current input
-		 */
-		if (isc instanceof Accept || isc instanceof Fail)
-			current.reset();
-		
-		return isc;
+		return current.feed(f);
+	}
+	
+	/**
+	 * Get the current state if it takes the allocation
+	 * free route, see FastState
+	 * 
+	 * @return The current state (or null if it is not a FastState)
+	 */
+	FastState getFastState(){
+		return fast;
+	}
+	
+	/**
+	 * Keep consuming the characters in a class without
+	 * feeding them to our state, see ConsumeWhile
+	 * 
+	 * @param run The class of characters to consume (or null to stop)
+	 * @param structural Whether to consume up to the next structural character instead, see SkipToStructural
+	 */
+	void setRun(CharClass run, boolean structural){
+		this.run = run;
+		this.structural = structural;
+		listener = run != null && current instanceof RunListener ? (RunListener) current : null;
+	}
+	
+	/**
+	 * Get the class of characters we consume without feeding
+	 * 
+	 * @return The class of characters (or null if we feed all characters)
+	 */
+	CharClass getRun(){
+		return run;
+	}
+	
+	/**
+	 * Whether we consume up to the next structural character,
+	 * instead of the characters in our run class
+	 * 
+	 * @return True iff our run is a SkipToStructural
+	 */
+	boolean isStructuralRun(){
+		return structural;
+	}
+	
+	/**
+	 * Hand characters consumed on behalf of our state
+	 * to the state, if it is a RunListener
+	 * 
+	 * @param chars The array holding the characters
+	 * @param offset The index of the first character
+	 * @param length The amount of characters
+	 */
+	void consumed(char[] chars, int offset, int length){
+		if (listener != null && length > 0)
+			listener.consumed(chars, offset, length);
+	}
+	
+	/**
+	 * Finalize the content of our node, it is linked
+	 * to its parent once the machine leaves our state
+	 * 
+	 * @param content The content of the node
+	 */
+	void setContent(String content){
+		top.setContent(content);
+	}
+	
+	/**
+	 * Reset the State's internal state upon finishing
+	 * with the current input
+	 */
+	void reset(){
+		current.reset();
+	}
+	
+	/**
+	 * Enter a new state in a new child node,
+	 * used when the machine handles a Goto
+	 * 
+	 * @param s The state to enter
+	 * @param id The grammar id of the state
+	 * @param offset The offset of the first character to feed the state
+	 * @param name The name of the state we moved into
+	 */
+	void enter(State s, int id, int offset, String name){
+		ParseTreeNode child = null;
+		if (!detached){
+			child = new ParseTreeNode(name);
+			child.setParent(top.node);
+		}
+		top = new Frame(s, id, offset, child, name, top, this, null, null, -1);
+		setCurrent(s);
+	}
+	
+	/**
+	 * Leave the current state and re-enter the previous state.
+	 * The node of the current state is linked to its parent.
+	 * If the previous state and node are shared with other 
+	 * builders, we continue on copies of these.
+	 * 
+	 * @return The State we were previously in or null if on top
+	 */
+	State popState(){
+		if (top == null)
+			return null;
+		ParseTreeNode done = top.node;
+		top = top.next;
+		if (top != null){
+			top = top.claim(this);
+			if (!detached)
+				top.node.addChild(done);
+			setCurrent(top.state);
+		} else {
+			finished = done;
+			setCurrent(null);
+		}
+		return current;
+	}
+	
+	/**
+	 * Hold back an event until we are the only StateBuilder left
+	 * 
+	 * @param enter True if a state was entered, false if it was left
+	 * @param name The state name (override)
+	 * @param content The content of the left state (or null if entered)
+	 * @param offset The offset of the event, see ParseListener
+	 */
+	void record(boolean enter, String name, String content, int offset){
+		events = new ParseEvent(enter, name, content, offset, events);
+	}
+	
+	/**
+	 * Take the events held back so far
+	 * 
+	 * @return The latest event, linked to the ones before it (or null if none)
+	 */
+	ParseEvent takeEvents(){
+		ParseEvent out = events;
+		events = null;
+		return out;
 	}
 	
 	/**
@@ -127,19 +271,129 @@ public class StateBuilder {
 	 * @return The top most node in the full tree (not just the subtree)
 	 */
 	public ParseTreeNode getRealRoot(){
-		ParseTreeNode out = root;
+		if (top == null)
+			return finished;
+		if (detached)
+			return root;
+		ParseTreeNode out = top.node;
 		while (out.getParent() != null)
 			out = (ParseTreeNode) out.getParent();
 		return out;
 	}
 	
 	/**
-	 * Set the state of this builder
+	 * Set the state of this builder, replacing
+	 * the state of its current node
 	 * 
 	 * @param s The new state
 	 */
 	public void setState(State s){
+		setState(s, -1, top.offset, top.choice, top.rank);
+	}
+	
+	/**
+	 * Set the state of this builder, replacing
+	 * the state of its current node
+	 * 
+	 * @param s The new state
+	 * @param id The grammar id of the state
+	 * @param offset The offset of the first character to feed the state
+	 * @param choice The ordered choice the state is an alternative of (or null if none)
+	 * @param rank The rank of the state within the choice
+	 */
+	void setState(State s, int id, int offset, Choice choice, int rank){
+		Frame replaced = top;
+		top = new Frame(s, id, offset, replaced.node, replaced.name, replaced.next, this, replaced.joiners, choice, rank);
+		top.setContent(replaced.getContent());
+		setCurrent(s);
+	}
+	
+	/**
+	 * Get the top frame of our state stack
+	 * 
+	 * @return The top frame (or null if we left all states)
+	 */
+	Frame getTop(){
+		return top;
+	}
+	
+	/**
+	 * Whether or not another StateBuilder entered the same
+	 * state as we did at the same offset, and its state is
+	 * equivalent to ours. From here on it will then do exactly
+	 * what we do, until we leave the state.
+	 * 
+	 * @param other The StateBuilder to compare to
+	 * @return True iff the other StateBuilder can join us
+	 */
+	boolean isEquivalent(StateBuilder other){
+		Frame a = top;
+		Frame b = other.top;
+		return a != null && b != null && a.id >= 0 && a.id == b.id && a.offset == b.offset
+				&& (run == null ? other.run == null : run.equals(other.run)) && structural == other.structural
+				&& a.state instanceof MergeableState && ((MergeableState) a.state).isEquivalent(b.state);
+	}
+	
+	/**
+	 * Whether or not we are in an alternative of an ordered 
+	 * choice that has been decided for another alternative
+	 * 
+	 * @param choice The decided choice
+	 * @return True iff we are in a losing alternative
+	 */
+	boolean hasLost(Choice choice){
+		for (Frame f = top; f != null; f = f.next){
+			if (f.choice == choice && f.rank != choice.getWinner())
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Park an equivalent StateBuilder on our current state,
+	 * it is resumed every time we leave the state.
+	 * The parked StateBuilder is removed from the machine.
+	 * 
+	 * @param other The StateBuilder to park
+	 */
+	void join(StateBuilder other){
+		top.park(other, detached ? 0 : top.node.getChildCount());
+		other.kill();
+	}
+	
+	/**
+	 * Create a new StateBuilder that continues where this
+	 * parked StateBuilder left off. The state it was parked in is
+	 * completed with the children and content of the given frame,
+	 * so it is ready to be left.
+	 * 
+	 * @param completed The frame we were parked on, about to be left
+	 * @param from The amount of children of the frame node we already have
+	 * @param id The number of the resumed StateBuilder
+	 * @return The resumed StateBuilder
+	 */
+	StateBuilder resume(Frame completed, int from, long id){
+		StateBuilder out = new StateBuilder(this, id);
+		ParseTreeNode node = null;
+		if (!detached){
+			node = top.node.branch();
+			for (int i = from; i < completed.node.getChildCount(); i++)
+				node.addChild(completed.node.getChildAt(i));
+		}
+		out.top = new Frame(top.state, top.id, top.offset, node, top.name, top.next, out, top.joiners, top.choice, top.rank);
+		out.top.setContent(completed.getContent());
+		out.setCurrent(top.state);
+		return out;
+	}
+	
+	/**
+	 * Set the state we feed characters to
+	 * 
+	 * @param s The current state (or null if we left all states)
+	 */
+	private void setCurrent(State s){
 		current = s;
+		fast = s instanceof FastState ? (FastState) s : null;
 	}
 	
 	protected State getState(){
@@ -153,8 +407,8 @@ public class StateBuilder {
 	 * @return The name of the node being handled
 	 */
 	public String getCurrentNodeName(){
-		if (node != null)
-			return node.getName();
+		if (top != null)
+			return top.name;
 		return null;
 	}
 	
@@ -165,8 +419,8 @@ public class StateBuilder {
 	 * @return The name of the parent of the node being handled
 	 */
 	public String getNodeParentName(){
-		if (node != null && node.getParent() != null)
-			return ((ParseTreeNode) this.node.getParent()).getName();
+		if (top != null && top.next != null)
+			return top.next.name;
 		return null;
 	}
 	
@@ -177,28 +431,86 @@ public class StateBuilder {
 	 * @return Tree info on the current node
 	 */
 	public String currentNodeInfo(){
-		if (node == null)
+		if (top == null)
 			return "$EPM_NO_STATE";
-		return node.debugInfo();
+		String out = top.name;
+		for (Frame f = top.next; f != null; f = f.next)
+			out = f.name + " -> " + out;
+		return out;
 	}
 	
 	/**
 	 * Branch the current node off into several states
 	 * Used for handling ambiguity
 	 * 
+	 * The new StateBuilders share our nodes and states,
+	 * their own states still need to be set.
+	 * 
 	 * @param nameOverrides The states of the (detached) child nodes 
+	 * @param firstId The number of the first new StateBuilder, the others follow it
 	 * @return A new set of StateBuilders for the new child nodes
 	 */
-	public Collection<StateBuilder> split(Collection<String> nameOverrides){
-		HashSet<StateBuilder> sbs = new HashSet<StateBuilder>();
-		if (nameOverrides.size() == 0)
-			return sbs;
+	public Collection<StateBuilder> split(Collection<String> nameOverrides, long firstId){
+		ArrayList<StateBuilder> sbs = new ArrayList<StateBuilder>(nameOverrides.size());
 		for (String state : nameOverrides)
-			sbs.add(new StateBuilder(null, state, node.copy()));
+			sbs.add(branch(state, firstId++));
 		return sbs;
 	}
 	
+	/**
+	 * Branch off a single StateBuilder into a new child
+	 * node, see split()
+	 * 
+	 * @param nameOverride The state of the (detached) child node
+	 * @param id The number of the new StateBuilder
+	 * @return A new StateBuilder for the new child node
+	 */
+	StateBuilder branch(String nameOverride, long id){
+		return new StateBuilder(this, nameOverride, id);
+	}
+	
+	/**
+	 * Get the number of this builder within its parse,
+	 * later builders have higher numbers
+	 * 
+	 * @return The id of this builder
+	 */
 	public long getBuilderId(){
 		return myid;
 	}
+	
+	/**
+	 * Mark this builder as freshly guessed into a state,
+	 * so the machine can learn from its first response
+	 * 
+	 * @param id The id of the guessed state (or -1 if done)
+	 */
+	void setGuessed(int id){
+		guessed = id;
+	}
+	
+	/**
+	 * Get the state this builder was freshly guessed into
+	 * 
+	 * @return The id of the guessed state (or -1 if none)
+	 */
+	int getGuessed(){
+		return guessed;
+	}
+	
+	/**
+	 * Mark this builder as removed from the machine
+	 */
+	void kill(){
+		dead = true;
+	}
+	
+	/**
+	 * Whether or not this builder was removed from the machine
+	 * 
+	 * @return True iff kill() was called
+	 */
+	boolean isDead(){
+		return dead;
+	}
 }
@@ -0,0 +1,240 @@
+package org.epm.edu;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Copies and compares States field by field, see StateAdapter.copy()
+ * and StateAdapter.isEquivalent().
+ *
+ * The reflective lookup of the zero argument constructor
+ * and the fields of a class is done once, after which a
+ * copy only invokes the prepared method handles.
+ */
+final class StateCopier {
+
+	private static final ClassValue<StateCopier> COPIERS = new ClassValue<StateCopier>(){
+		@Override
+		protected StateCopier computeValue(Class<?> type) {
+			return new StateCopier(type);
+		}
+	};
+
+	private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>(){
+		@Override
+		protected MethodHandle computeValue(Class<?> type) {
+			return findConstructor(type);
+		}
+	};
+
+	private static final MethodHandle DEEP_COPY;
+
+	static {
+		try {
+			DEEP_COPY = MethodHandles.lookup().findStatic(StateCopier.class, "deepCopy",
+					MethodType.methodType(Object.class, Object.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final String name;
+	private final MethodHandle constructor;
+	private final MethodHandle[] copiers;
+	private final Field[] finals;
+	private final boolean[] deepFinals;
+	private final Field[] all;
+	private String error = null;
+
+	/**
+	 * Get the (cached) copier for a certain class
+	 *
+	 * @param type The class of the States to copy
+	 * @return The copier for the class
+	 */
+	static StateCopier of(Class<?> type){
+		return COPIERS.get(type);
+	}
+
+	private StateCopier(Class<?> type){
+		name = type.getSimpleName();
+		constructor = findConstructor(type);
+		if (constructor == null)
+			error = "Could not use generic zero-parameter constructor: Implement " + name + ".copy()!";
+
+		ArrayList<MethodHandle> handles = new ArrayList<MethodHandle>();
+		ArrayList<Field> fields = new ArrayList<Field>();
+		ArrayList<Field> allFields = new ArrayList<Field>();
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()){
+			for (Field f : c.getDeclaredFields()){
+				if (Modifier.isStatic(f.getModifiers()))
+					continue;
+				try {
+					f.setAccessible(true);
+					allFields.add(f);
+					if (Modifier.isFinal(f.getModifiers())){
+						fields.add(f);
+						continue;
+					}
+					handles.add(fieldCopier(lookup, f));
+				} catch (Exception e) {
+					error = "Could not copy field(s): Implement " + name + ".copy()!";
+				}
+			}
+		}
+		copiers = handles.toArray(new MethodHandle[handles.size()]);
+		finals = fields.toArray(new Field[fields.size()]);
+		all = allFields.toArray(new Field[allFields.size()]);
+		deepFinals = new boolean[finals.length];
+		for (int i = 0; i < finals.length; i++)
+			deepFinals[i] = finals[i].isAnnotationPresent(DeepCopy.class);
+	}
+
+	/**
+	 * Create a handle that copies a single field from
+	 * its first argument to its second argument
+	 */
+	private static MethodHandle fieldCopier(MethodHandles.Lookup lookup, Field f) throws IllegalAccessException{
+		MethodHandle getter = lookup.unreflectGetter(f);
+		MethodHandle setter = lookup.unreflectSetter(f);
+		if (f.isAnnotationPresent(DeepCopy.class) && !f.getType().isPrimitive())
+			getter = MethodHandles.filterReturnValue(getter,
+					DEEP_COPY.asType(MethodType.methodType(f.getType(), f.getType())));
+		MethodHandle copier = MethodHandles.filterArguments(setter, 1, getter);
+		return MethodHandles.permuteArguments(
+				copier.asType(MethodType.methodType(void.class, Object.class, Object.class)),
+				MethodType.methodType(void.class, Object.class, Object.class), 1, 0);
+	}
+
+	/**
+	 * Find the zero argument constructor of a class
+	 *
+	 * @return The constructor as ()Object or null if there is none
+	 */
+	private static MethodHandle findConstructor(Class<?> type){
+		for (Constructor<?> c : type.getDeclaredConstructors()){
+			if (c.getParameterTypes().length != 0)
+				continue;
+			try {
+				c.setAccessible(true);
+				return MethodHandles.lookup().unreflectConstructor(c)
+						.asType(MethodType.methodType(Object.class));
+			} catch (Exception e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Copy a state
+	 *
+	 * @param state The State to copy
+	 * @return A copy of the State
+	 */
+	State copy(State state){
+		if (error != null)
+			throw new RuntimeException(error);
+		try {
+			Object out = constructor.invokeExact();
+			for (MethodHandle copier : copiers)
+				copier.invokeExact((Object) state, out);
+			for (int i = 0; i < finals.length; i++){
+				Object value = finals[i].get(state);
+				finals[i].set(out, deepFinals[i] ? deepCopy(value) : value);
+			}
+			return (State) out;
+		} catch (Throwable t) {
+			throw new RuntimeException("Could not copy field(s): Implement " + name + ".copy()!", t);
+		}
+	}
+
+	/**
+	 * Whether or not two states of our class have equal fields.
+	 * Fields marked with DeepCopy are compared by value, all
+	 * others by equals().
+	 * 
+	 * @param state The first State
+	 * @param other The second State
+	 * @return True iff all fields are equal
+	 */
+	boolean equivalent(State state, State other){
+		if (state.getClass() != other.getClass())
+			return false;
+		try {
+			for (Field f : all){
+				Object a = f.get(state);
+				Object b = f.get(other);
+				if (a == b)
+					continue;
+				if (a == null || b == null)
+					return false;
+				if (!f.isAnnotationPresent(DeepCopy.class) ? !a.equals(b) : !deepEquals(a, b))
+					return false;
+			}
+			return true;
+		} catch (IllegalAccessException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Compare two values of a field marked with DeepCopy
+	 */
+	private static boolean deepEquals(Object a, Object b){
+		if (a instanceof StringBuilder && b instanceof StringBuilder)
+			return a.toString().equals(b.toString());
+		if (a instanceof MergeableState && b instanceof State)
+			return ((MergeableState) a).isEquivalent((State) b);
+		if (a.getClass().isArray())
+			return Arrays.deepEquals(new Object[]{ a }, new Object[]{ b });
+		return a.equals(b);
+	}
+
+	/**
+	 * Copy a value of a field marked with DeepCopy
+	 *
+	 * @param value The value to copy
+	 * @return The copied value
+	 * @throws Throwable If the value could not be instantiated
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object deepCopy(Object value) throws Throwable{
+		if (value == null)
+			return null;
+		if (value instanceof StringBuilder)
+			return new StringBuilder((StringBuilder) value);
+		if (value instanceof State)
+			return ((State) value).copy();
+		Class<?> type = value.getClass();
+		if (type.isArray()){
+			int length = Array.getLength(value);
+			Object out = Array.newInstance(type.getComponentType(), length);
+			System.arraycopy(value, 0, out, 0, length);
+			return out;
+		}
+		if (value instanceof Collection || value instanceof Map){
+			MethodHandle c = CONSTRUCTORS.get(type);
+			if (c == null)
+				throw new IllegalArgumentException("No zero argument constructor: " + type.getName());
+			Object out = c.invokeExact();
+			if (out instanceof Collection)
+				((Collection) out).addAll((Collection) value);
+			else
+				((Map) out).putAll((Map) value);
+			return out;
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.epm.edu;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A CharSource reading blocks of bytes from an InputStream.
+ * Every byte is handed out as a single character (0-255),
+ * just like InputStream.read() would.
+ */
+public class StreamCharSource extends CharSource{
+
+	private final InputStream feeder;
+	private final byte[] bytes;
+
+	/**
+	 * Wrap a given InputStream
+	 *
+	 * @param is The InputStream to read bytes from
+	 */
+	public StreamCharSource(InputStream is){
+		this(is, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Wrap a given InputStream, reading a certain
+	 * amount of bytes at once
+	 *
+	 * @param is The InputStream to read bytes from
+	 * @param blockSize The maximum amount of bytes to read at once
+	 */
+	public StreamCharSource(InputStream is, int blockSize){
+		super(blockSize);
+		feeder = is;
+		bytes = new byte[blockSize];
+	}
+
+	@Override
+	protected int fill(char[] buffer) throws IOException {
+		int read = feeder.read(bytes, 0, bytes.length);
+		for (int i = 0; i < read; i++)
+			buffer[i] = (char) (bytes[i] & 0xFF);
+		return read;
+	}
+
+}
@@ -0,0 +1,206 @@
+package org.epm.edu;
+
+/**
+ * An index of the structural characters in the input, see
+ * EasyParseMachine.setStructuralIndex() and SkipToStructural.
+ *
+ * Structural characters are the characters of an alphabet,
+ * like the brackets, commas and colons of JSON, outside of
+ * quoted strings, and the quotes opening and closing these
+ * strings. Quotes preceded by an escape are part of the string.
+ *
+ * Every block of input the machine reads is indexed in one
+ * pass into a bitmap with a bit per character. Following
+ * simdjson, the escapes and strings are resolved 64 characters
+ * at a time with word operations on the bitmaps of quotes and
+ * escapes, instead of a character by character state machine.
+ *
+ * An index keeps track of whether the input is in a string
+ * from one block to the next, so it can only be used by a
+ * single machine at once.
+ */
+public class StructuralIndex {
+
+	private static final long EVEN_BITS = 0x5555555555555555L;
+
+	private final CharClass alphabet;
+	private final char quote;
+	private final char escape;
+
+	private long[] bits = new long[0];
+	private boolean inString = false;
+	private boolean escaped = false;
+
+	/**
+	 * Create a new StructuralIndex
+	 *
+	 * @param alphabet The structural characters outside of strings
+	 * @param quote The character that opens and closes strings
+	 * @param escape The character that escapes the next character in a string
+	 */
+	public StructuralIndex(CharClass alphabet, char quote, char escape){
+		this.alphabet = alphabet;
+		this.quote = quote;
+		this.escape = escape;
+	}
+
+	/**
+	 * Create an index for JSON: brackets, braces, commas,
+	 * colons and quotes, with backslash escapes
+	 *
+	 * @return A new StructuralIndex for JSON
+	 */
+	public static StructuralIndex json(){
+		return new StructuralIndex(CharClass.of("[]{},:"), '"', '\\');
+	}
+
+	/**
+	 * Create a new StructuralIndex for the same alphabet,
+	 * to be used by another machine
+	 *
+	 * @return A fresh copy of this index
+	 */
+	public StructuralIndex copy(){
+		return new StructuralIndex(alphabet, quote, escape);
+	}
+
+	/**
+	 * Forget about the previous input, the next
+	 * block indexed is the start of a new input
+	 */
+	public void reset(){
+		inString = false;
+		escaped = false;
+	}
+
+	/**
+	 * Index a block of input, replacing the index of
+	 * the previous block
+	 *
+	 * @param buffer The block of input
+	 * @param from The index of the first character in the block, a multiple of 64
+	 * @param to The index after the last character in the block
+	 */
+	public void index(char[] buffer, int from, int to){
+		int words = (to + 63) >>> 6;
+		if (bits.length < words)
+			bits = new long[words];
+		long prevEscaped = escaped ? 1 : 0;
+		long prevInString = inString ? -1L : 0;
+		int w = from >>> 6;
+		for (; (w + 1) << 6 <= to; w++){
+			//Classify a full word of characters
+			long quotes = 0;
+			long escapes = 0;
+			long structurals = 0;
+			int base = w << 6;
+			for (int i = 0; i < 64; i++){
+				char c = buffer[base + i];
+				long bit = 1L << i;
+				if (c == quote)
+					quotes |= bit;
+				else if (c == escape)
+					escapes |= bit;
+				if (alphabet.matches(c))
+					structurals |= bit;
+			}
+
+			//Find the escaped characters: every other character after a run of escapes
+			escapes &= ~prevEscaped;
+			long followsEscape = (escapes << 1) | prevEscaped;
+			long oddStarts = escapes & ~EVEN_BITS & ~followsEscape;
+			long evenStarts = oddStarts + escapes;
+			prevEscaped = (evenStarts ^ Long.MIN_VALUE) < (oddStarts ^ Long.MIN_VALUE) ? 1 : 0;
+			long escapedChars = (EVEN_BITS ^ (evenStarts << 1)) & followsEscape;
+
+			//A string runs from an unescaped quote up to the next one
+			quotes &= ~escapedChars;
+			long strings = prefixXor(quotes) ^ prevInString;
+			prevInString = strings >> 63;
+
+			bits[w] = (structurals & ~strings & ~quotes & ~escapedChars) | quotes;
+		}
+		escaped = prevEscaped != 0;
+		inString = prevInString != 0;
+
+		//Index the characters of the last partial word one by one
+		if (w << 6 < to){
+			long out = 0;
+			for (int i = w << 6; i < to; i++){
+				char c = buffer[i];
+				if (escaped){
+					escaped = false;
+				} else if (inString){
+					if (c == escape)
+						escaped = true;
+					else if (c == quote){
+						inString = false;
+						out |= 1L << i;
+					}
+				} else if (c == quote){
+					inString = true;
+					out |= 1L << i;
+				} else if (c == escape){
+					escaped = true;
+				} else if (alphabet.matches(c)){
+					out |= 1L << i;
+				}
+			}
+			bits[w] = out;
+		}
+	}
+
+	/**
+	 * Whether or not a character of the last indexed block is structural
+	 *
+	 * @param i The index of the character in the block
+	 * @return True iff the character is structural
+	 */
+	public boolean isStructural(int i){
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Find the next structural character of the last indexed block
+	 *
+	 * @param from The index of the first character to look at
+	 * @param to The index after the last character to look at
+	 * @return The index of the first structural character (or to if there is none)
+	 */
+	public int next(int from, int to){
+		if (from >= to)
+			return to;
+		int w = from >>> 6;
+		long word = bits[w] & (-1L << from);
+		while (word == 0){
+			if (++w << 6 >= to)
+				return to;
+			word = bits[w];
+		}
+		return Math.min((w << 6) + Long.numberOfTrailingZeros(word), to);
+	}
+
+	/**
+	 * Get the structural characters outside of strings
+	 *
+	 * @return The alphabet of this index
+	 */
+	public CharClass getAlphabet(){
+		return alphabet;
+	}
+
+	/**
+	 * Compute for every bit whether an odd amount of bits is set
+	 * up to and including it
+	 */
+	private static long prefixXor(long x){
+		x ^= x << 1;
+		x ^= x << 2;
+		x ^= x << 4;
+		x ^= x << 8;
+		x ^= x << 16;
+		x ^= x << 32;
+		return x;
+	}
+
+}
@@ -5,6 +5,11 @@ package org.epm.edu.statechanges;
  */
 public class Accept implements IStateChange{
 
+	/**
+	 * A shared Accept without content
+	 */
+	public static final Accept INSTANCE = new Accept();
+
 	private final String content;
 	
 	public Accept(){
@@ -19,4 +24,8 @@ public class Accept implements IStateChange{
 		return content;
 	}
 	
+	public final int getKind(){
+		return ACCEPT;
+	}
+	
 }
@@ -5,6 +5,11 @@ package org.epm.edu.statechanges;
  */
 public class Closure implements IStateChange{
 
+	/**
+	 * A shared Closure without content
+	 */
+	public static final Closure INSTANCE = new Closure();
+
 	private final String content;
 	
 	public Closure(){
@@ -18,4 +23,9 @@ public class Closure implements IStateChange{
 	public String getContent(){
 		return content;
 	}
+	
+	public final int getKind(){
+		return CLOSURE;
+	}
+	
 }
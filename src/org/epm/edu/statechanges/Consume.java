@@ -5,8 +5,17 @@ package org.epm.edu.statechanges;
  */
 public class Consume implements IStateChange{
 
+	/**
+	 * A shared Consume, there is no need to create new ones
+	 */
+	public static final Consume INSTANCE = new Consume();
+
 	public Consume(){
 		
 	}
 	
+	public final int getKind(){
+		return CONSUME;
+	}
+	
 }
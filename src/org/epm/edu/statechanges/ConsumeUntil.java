@@ -0,0 +1,20 @@
+package org.epm.edu.statechanges;
+
+import org.epm.edu.CharClass;
+
+/**
+ * Do not change state, we are consuming this input and
+ * all following input up to a character in a class.
+ * The machine consumes these without feeding them to us,
+ * the first character in the class is fed to us as usual.
+ */
+public class ConsumeUntil extends ConsumeWhile{
+
+	/**
+	 * @param delimiters The class of characters to stop at
+	 */
+	public ConsumeUntil(CharClass delimiters){
+		super(delimiters.not());
+	}
+	
+}
@@ -0,0 +1,37 @@
+package org.epm.edu.statechanges;
+
+import org.epm.edu.CharClass;
+
+/**
+ * Do not change state, we are consuming this input and 
+ * all following input in a class of characters.
+ * The machine consumes these without feeding them to us,
+ * the first character not in the class is fed to us as usual.
+ * See RunListener to receive the consumed characters.
+ * 
+ * ConsumeWhiles are immutable, keep the ones you use
+ * in static fields.
+ */
+public class ConsumeWhile implements IStateChange{
+
+	private final CharClass run;
+	
+	/**
+	 * @param run The class of characters to keep consuming
+	 */
+	public ConsumeWhile(CharClass run){
+		this.run = run;
+	}
+	
+	/**
+	 * @return The class of characters to keep consuming
+	 */
+	public CharClass getCharClass(){
+		return run;
+	}
+	
+	public final int getKind(){
+		return CONSUME_WHILE;
+	}
+	
+}
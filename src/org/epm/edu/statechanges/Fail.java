@@ -5,8 +5,17 @@ package org.epm.edu.statechanges;
  */
 public class Fail implements IStateChange{
 
+	/**
+	 * A shared Fail, there is no need to create new ones
+	 */
+	public static final Fail INSTANCE = new Fail();
+
 	public Fail(){
 		
 	}
 	
+	public final int getKind(){
+		return FAIL;
+	}
+	
 }
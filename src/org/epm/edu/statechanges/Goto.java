@@ -6,13 +6,39 @@ package org.epm.edu.statechanges;
 public class Goto implements IStateChange{
 
 	private final String nextState;
+	private final int nextStateId;
 	
 	public Goto(String next){
 		this.nextState = next;
+		this.nextStateId = -1;
 	}
 	
+	/**
+	 * Change to a state by its id, see EasyParseMachine.getStateId()
+	 * 
+	 * @param next The id of the next state
+	 */
+	public Goto(int next){
+		this.nextState = null;
+		this.nextStateId = next;
+	}
+	
+	/**
+	 * @return The name of the next state or null if given by id
+	 */
 	public String getNextState(){
 		return nextState;
 	}
 	
+	/**
+	 * @return The id of the next state or -1 if given by name
+	 */
+	public int getNextStateId(){
+		return nextStateId;
+	}
+	
+	public final int getKind(){
+		return GOTO;
+	}
+	
 }
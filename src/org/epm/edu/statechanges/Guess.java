@@ -9,17 +9,55 @@ import java.util.Collection;
 public class Guess implements IStateChange{
 
 	private final Collection<String> nextStates;
+	private final int[] nextStateIds;
+	private final int kind;
 	
 	public Guess(Collection<String> next){
-		this.nextStates = next;
+		this(next, null, GUESS);
 	}
 	
 	public Guess(String... next){
-		this.nextStates = Arrays.asList(next);
+		this(Arrays.asList(next), null, GUESS);
 	}
 	
+	/**
+	 * Change to states by their ids, see EasyParseMachine.getStateId()
+	 * 
+	 * @param next The ids of the next states
+	 */
+	public Guess(int... next){
+		this(null, next, GUESS);
+	}
+	
+	/**
+	 * Change to states by either their names or their ids
+	 * 
+	 * @param names The names of the next states (or null if given by id)
+	 * @param ids The ids of the next states (or null if given by name)
+	 * @param kind The kind code of the change
+	 */
+	protected Guess(Collection<String> names, int[] ids, int kind){
+		this.nextStates = names;
+		this.nextStateIds = ids;
+		this.kind = kind;
+	}
+	
+	/**
+	 * @return The names of the next states or null if given by id
+	 */
 	public Collection<String> getNextStates(){
 		return nextStates;
 	}
 	
+	/**
+	 * @return The ids of the next states or null if given by name
+	 */
+	public int[] getNextStateIds(){
+		return nextStateIds;
+	}
+	
+	public final int getKind(){
+		return kind;
+	}
+	
 }
@@ -1,5 +1,32 @@
 package org.epm.edu.statechanges;
 
+/**
+ * A change in state requested by a State.
+ * 
+ * Every kind of change has its own code, so the
+ * machine can handle a change with a single switch.
+ */
 public interface IStateChange {
 
+	public static final int ACCEPT = 0;
+	public static final int CLOSURE = 1;
+	public static final int CONSUME = 2;
+	public static final int FAIL = 3;
+	public static final int GOTO = 4;
+	public static final int GUESS = 5;
+	public static final int SPLIT = 6;
+	public static final int ORDERED_GUESS = 7;
+	public static final int CONSUME_WHILE = 8;
+	public static final int SKIP_STRUCTURAL = 9;
+	
+	/**
+	 * Get the kind of this change. The kinds are reserved for
+	 * the changes in this package, the machine casts a change
+	 * to the class belonging to its kind. Any other kind makes
+	 * the parse throw an UnknownStateChangeException.
+	 * 
+	 * @return One of the kind codes of IStateChange
+	 */
+	public int getKind();
+	
 }
@@ -0,0 +1,32 @@
+package org.epm.edu.statechanges;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Ambiguous change state with ordered choice, we have not consumed.
+ * 
+ * The first of the next states to be left through an Accept or
+ * Closure wins, all others are removed. If several next states are
+ * left at the same character, the one given first wins.
+ */
+public class OrderedGuess extends Guess{
+
+	public OrderedGuess(Collection<String> next){
+		super(next, null, ORDERED_GUESS);
+	}
+	
+	public OrderedGuess(String... next){
+		super(Arrays.asList(next), null, ORDERED_GUESS);
+	}
+	
+	/**
+	 * Change to states by their ids, see EasyParseMachine.getStateId()
+	 * 
+	 * @param next The ids of the next states, in order of preference
+	 */
+	public OrderedGuess(int... next){
+		super(null, next, ORDERED_GUESS);
+	}
+	
+}
@@ -0,0 +1,30 @@
+package org.epm.edu.statechanges;
+
+import org.epm.edu.CharClass;
+
+/**
+ * Do not change state, we are consuming this input and
+ * all following input up to one of a few delimiters. 
+ * The machine consumes these without feeding them to us,
+ * the first delimiter is fed to us as usual.
+ * Use this for long runs like the contents of a string,
+ * see CharClass.except().
+ */
+public class SkipTo extends ConsumeWhile{
+
+	/**
+	 * @param delimiters The characters to stop at
+	 */
+	public SkipTo(String delimiters){
+		this(delimiters, 0);
+	}
+	
+	/**
+	 * @param delimiters The characters to stop at
+	 * @param below Also stop at any character below this, for instance 0x20 for control characters
+	 */
+	public SkipTo(String delimiters, int below){
+		super(CharClass.except(delimiters, below));
+	}
+	
+}
@@ -0,0 +1,25 @@
+package org.epm.edu.statechanges;
+
+/**
+ * Do not change state, we are consuming this input and
+ * all following input up to the next structural character,
+ * see EasyParseMachine.setStructuralIndex(). 
+ * The machine consumes these without feeding them to us,
+ * the structural character is fed to us as usual.
+ */
+public class SkipToStructural implements IStateChange{
+
+	/**
+	 * A shared SkipToStructural, there is no need to create new ones
+	 */
+	public static final SkipToStructural INSTANCE = new SkipToStructural();
+
+	public SkipToStructural(){
+		
+	}
+	
+	public final int getKind(){
+		return SKIP_STRUCTURAL;
+	}
+	
+}
@@ -9,17 +9,44 @@ import java.util.Collection;
 public class Split implements IStateChange{
 
 	private final Collection<String> nextStates;
+	private final int[] nextStateIds;
 	
 	public Split(Collection<String> next){
 		this.nextStates = next;
+		this.nextStateIds = null;
 	}
 	
 	public Split(String... next){
 		this.nextStates = Arrays.asList(next);
+		this.nextStateIds = null;
 	}
 	
+	/**
+	 * Change to states by their ids, see EasyParseMachine.getStateId()
+	 * 
+	 * @param next The ids of the next states
+	 */
+	public Split(int... next){
+		this.nextStates = null;
+		this.nextStateIds = next;
+	}
+	
+	/**
+	 * @return The names of the next states or null if given by id
+	 */
 	public Collection<String> getNextStates(){
 		return nextStates;
 	}
 	
+	/**
+	 * @return The ids of the next states or null if given by name
+	 */
+	public int[] getNextStateIds(){
+		return nextStateIds;
+	}
+	
+	public final int getKind(){
+		return SPLIT;
+	}
+	
 }
@@ -5,16 +5,28 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import test.integration.EasyParseMachineTest;
+import test.integration.JSONReaderTest;
 import test.integration.StatedInterferenceTest;
+import test.unit.CharClassTest;
+import test.unit.CharSourceTest;
 import test.unit.EPMDebugStreamTest;
+import test.unit.ElementSplitterTest;
 import test.unit.ParseTreeNodeTest;
+import test.unit.StateAdapterTest;
+import test.unit.StructuralIndexTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({ 
+	CharClassTest.class,
+	CharSourceTest.class,
 	EasyParseMachineTest.class, 
 	EPMDebugStreamTest.class,
+	ElementSplitterTest.class,
+	JSONReaderTest.class,
 	ParseTreeNodeTest.class,
-	StatedInterferenceTest.class
+	StateAdapterTest.class,
+	StatedInterferenceTest.class,
+	StructuralIndexTest.class
 	})
 public class AllAutomatedTests {
 
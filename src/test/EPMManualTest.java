@@ -55,15 +55,15 @@ public class EPMManualTest {
 
 		public IStateChange feed(int c) {
 			if (Character.isWhitespace(c))
-				return new Consume();
+				return Consume.INSTANCE;
 			if (c == -1)
-				return new Closure();
+				return Closure.INSTANCE;
 			else if (c == '('){
 				return new Goto("Parentheses");
 			} else if (Character.isDigit(c)){
 				return new Goto("Numbers");
 			} else {
-				return new Fail();
+				return Fail.INSTANCE;
 			}
 		}
 		
@@ -82,16 +82,16 @@ public class EPMManualTest {
 		
 		public IStateChange feed(int c) {
 			if (Character.isWhitespace(c))
-				return new Consume();
+				return Consume.INSTANCE;
 			if (c == ')'){
-				return new Closure();
+				return Closure.INSTANCE;
 			} else if (c == '(' && !closed){
 				closed = true;
 				return new Split("Numbers", "Letters", "LettersAndNumbers", "Parentheses");
 			} else if (c == '('){
 				return new Goto("Parentheses");
 			} else {
-				return new Fail();
+				return Fail.INSTANCE;
 			}
 		}
 		
@@ -110,14 +110,14 @@ public class EPMManualTest {
 		
 		public IStateChange feed(int c) {
 			if (Character.isWhitespace(c) && "".equals(content))
-				return new Consume();
+				return Consume.INSTANCE;
 			if (Character.isDigit(c)){
 				content += (char) c;
-				return new Consume();
+				return Consume.INSTANCE;
 			} else if (!"".equals(content) && !Character.isLetter((char)c)) {
 				return new Accept(content);
 			} else {
-				return new Fail();
+				return Fail.INSTANCE;
 			}
 		}
 
@@ -137,14 +137,14 @@ public class EPMManualTest {
 		
 		public IStateChange feed(int c) {
 			if (Character.isWhitespace(c) && "".equals(content))
-				return new Consume();
+				return Consume.INSTANCE;
 			if (Character.isLetter(c)){
 				content += (char) c;
-				return new Consume();
+				return Consume.INSTANCE;
 			} else if (!"".equals(content) && !Character.isDigit((char)c)) {
 				return new Accept(content);
 			} else {
-				return new Fail();
+				return Fail.INSTANCE;
 			}
 		}
 
@@ -167,19 +167,19 @@ public class EPMManualTest {
 		
 		public IStateChange feed(int c) {
 			if (Character.isWhitespace(c) && "".equals(content))
-				return new Consume();
+				return Consume.INSTANCE;
 			if (Character.isLetter(c)){
 				content += (char) c;
 				hasletters = true;
-				return new Consume();
+				return Consume.INSTANCE;
 			} else if (Character.isDigit(c)){
 				content += (char) c;
 				hasnumbers = true;
-				return new Consume();
+				return Consume.INSTANCE;
 			} else if (hasletters && hasnumbers){
 				return new Accept(content);
 			} else {
-				return new Fail();
+				return Fail.INSTANCE;
 			}
 		}
 
@@ -2,16 +2,21 @@ package test;
 
 import java.io.IOException;
 
+import org.epm.edu.CharClass;
 import org.epm.edu.EPMVisualDebugger;
 import org.epm.edu.EasyParseMachine;
+import org.epm.edu.PredictiveState;
+import org.epm.edu.RunListener;
 import org.epm.edu.StateAdapter;
 import org.epm.edu.statechanges.Accept;
 import org.epm.edu.statechanges.Closure;
 import org.epm.edu.statechanges.Consume;
+import org.epm.edu.statechanges.ConsumeWhile;
 import org.epm.edu.statechanges.Fail;
 import org.epm.edu.statechanges.Goto;
 import org.epm.edu.statechanges.Guess;
 import org.epm.edu.statechanges.IStateChange;
+import org.epm.edu.statechanges.SkipTo;
 
 /**
  * JSONReader - A JSON reading EPM implementation you can play 
@@ -29,7 +34,23 @@ import org.epm.edu.statechanges.IStateChange;
 
 public class JSONReader {
 
+	// Consume all whitespace without visiting the states
+	private static final ConsumeWhile WHITESPACE = new ConsumeWhile(CharClass.WHITESPACE);
+	
+	// Consume a string up to a quotation mark, an escape or a control character
+	private static final SkipTo STRING = new SkipTo("\"\\" + (char) 0x7F, 0x20);
+
 	public static void main (String[] args) throws IOException{
+		new EPMVisualDebugger(newMachine(), "root");
+	}
+	
+	/**
+	 * Create an EPM with all JSON states registered, 
+	 * starting at the "root" state
+	 * 
+	 * @return The JSON reading EPM
+	 */
+	public static EasyParseMachine newMachine(){
 		EasyParseMachine epm = new EasyParseMachine();
 		
 		// The start node
@@ -56,7 +77,7 @@ public class JSONReader {
 		// A key in a key value pair
 		epm.addState(new JSONString(), "Key");	// Alias a string as a key
 		
-		new EPMVisualDebugger(epm, "root");
+		return epm;
 	}
 	
 	/**
@@ -66,11 +87,11 @@ public class JSONReader {
 		public IStateChange feed(int c) {
 			// If we have not begun matching, just consume
 			if (Character.isWhitespace(c))
-				return new Consume();
+				return WHITESPACE;
 			
 			// If we have read all characters, stop
 			if (c == -1)
-				return new Closure();
+				return Closure.INSTANCE;
 			
 			// Try to match content
 			return new GotoJSONValue();
@@ -90,41 +111,47 @@ public class JSONReader {
 	/**
 	 * A state that matches objects in JSON format 
 	 */
-	private static class JSONObject extends StateAdapter{
+	private static class JSONObject extends StateAdapter implements PredictiveState{
 
 		private boolean opened = false;
 		private boolean expectvalue = false;
 		private boolean first = true;
 		private boolean expectcomma = false;
 
+		// Skip leading whitespace, then start with an opening bracket
+		@Override
+		public boolean canStartWith(int c) {
+			return Character.isWhitespace(c) || '{' == c;
+		}
+
 		@Override
 		public IStateChange feed(int c) {
 			// Consume whitespace
 			if (Character.isWhitespace(c))
-				return new Consume();
+				return WHITESPACE;
 			
 			// We must start with an opening bracket
 			if (!opened && c != '{')
-				return new Fail();
+				return Fail.INSTANCE;
 			if (!opened && c == '{'){
 				opened = true;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// End with a closing bracket
 			if (!expectvalue && '}' == (char) c)
-				return new Closure();
+				return Closure.INSTANCE;
 			
 			// If we read a comma start reading a new value
 			if (!expectvalue && !first && ',' == (char) c){
 				expectvalue = true;
 				expectcomma = false;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// We were expecting a separator
 			if (expectcomma)
-				return new Fail();
+				return Fail.INSTANCE;
 
 			// If we need to read a value, start reading it
 			expectvalue = false;
@@ -156,13 +183,13 @@ public class JSONReader {
 		public IStateChange feed(int c) {
 			// Consume whitespace
 			if (Character.isWhitespace(c))
-				return new Consume();
+				return WHITESPACE;
 			
 			// We just read a : and will have to read a value
 			if (expectvalue && ':' == c){
 				readvalue = true;
 				expectvalue = false;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// If we need to read a value, start reading it
@@ -177,9 +204,9 @@ public class JSONReader {
 
 			// If we matched everything, we are done
 			if (!expectstring && !expectvalue && !readvalue)
-				return new Accept();
+				return Accept.INSTANCE;
 			else
-				return new Fail();
+				return Fail.INSTANCE;
 		}
 		
 		@Override
@@ -194,41 +221,47 @@ public class JSONReader {
 	/**
 	 * A state that matches arrays in JSON format 
 	 */
-	private static class JSONArray extends StateAdapter{
+	private static class JSONArray extends StateAdapter implements PredictiveState{
 
 		private boolean opened = false;
 		private boolean expectvalue = false;
 		private boolean first = true;
 		private boolean expectcomma = false;
 
+		// Skip leading whitespace, then start with an opening bracket
+		@Override
+		public boolean canStartWith(int c) {
+			return Character.isWhitespace(c) || '[' == c;
+		}
+
 		@Override
 		public IStateChange feed(int c) {
 			// Consume whitespace
 			if (Character.isWhitespace(c))
-				return new Consume();
+				return WHITESPACE;
 			
 			// We must start with an opening bracket
 			if (!opened && c != '[')
-				return new Fail();
+				return Fail.INSTANCE;
 			if (!opened && c == '['){
 				opened = true;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// End with a closing bracket
 			if (!expectvalue && ']' == (char) c)
-				return new Closure();
+				return Closure.INSTANCE;
 			
 			// If we read a comma start reading a new value
 			if (!expectvalue && !first && ',' == (char) c){
 				expectvalue = true;
 				expectcomma = false;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// We were expecting a separator
 			if (expectcomma)
-				return new Fail();
+				return Fail.INSTANCE;
 
 			// If we need to read a value, start reading it
 			expectvalue = false;
@@ -250,7 +283,7 @@ public class JSONReader {
 	/**
 	 * A state that matches strings in JSON format 
 	 */
-	private static class JSONString extends StateAdapter{
+	private static class JSONString extends StateAdapter implements PredictiveState, RunListener{
 
 		private String content = "";
 		private boolean escaped = false;
@@ -258,33 +291,40 @@ public class JSONReader {
 		private boolean inunichar = false;
 		private String unichar = "";
 
+		// Skip leading whitespace, then start with a quotation mark
+		@Override
+		public boolean canStartWith(int c) {
+			return Character.isWhitespace(c) || '"' == c;
+		}
+
 		@Override
 		public IStateChange feed(int c) {
-			// If we have not begun matching anything, just consume
+			// If we have not begun matching anything, just consume, one
+			// by one as a run would end up in our content, see consumed()
 			if ("".equals(content) && Character.isWhitespace(c))
-				return new Consume();
+				return Consume.INSTANCE;
 			
 			// We must first read an opening quotation
 			if ("".equals(content) && '"' != c)
-				return new Fail();
+				return Fail.INSTANCE;
 			
 			// We must first read an opening quotation
 			if ("".equals(content) && '"' == c){
 				content += (char) c;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// We are reading a unicode character
 			if (inunichar){
 				if (!isHexDigit(c))
-					return new Fail();
+					return Fail.INSTANCE;
 				unichar += (char) c;
 				if (unichar.length() == 4){
 					inunichar = false;
 					content += unichar;
 					unichar = "";
 				}
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// Only accept if we ended with an unescaped "
@@ -293,26 +333,27 @@ public class JSONReader {
 			
 			// Control characters are never allowed
 			if (isControl(c))
-				return new Fail();
+				return Fail.INSTANCE;
 			
 			// If we are not being escaped and we are an escape, escape the next char
 			if (!escaped && '\\' == c){
 				escaped = true;
 				valid = false;
 				content += (char) c;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// If we are not escaped and not an escape character, just add us
+			// and any following characters that do not need a closer look
 			if (!escaped){
 				content += (char) c;
 				valid = '"' == c;
-				return new Consume();
+				return valid ? Consume.INSTANCE : STRING;
 			}
 			
 			// If our character is not escapable, fail
 			if (!isEscapable((char) c) && !inunichar)
-				return new Fail();
+				return Fail.INSTANCE;
 			
 			// Start a unicode block
 			if ('u' == (char) c)
@@ -322,7 +363,12 @@ public class JSONReader {
 			content += (char) c;
 			valid = false;
 			escaped = false;
-			return new Consume();
+			return Consume.INSTANCE;
+		}
+		
+		@Override
+		public void consumed(char[] chars, int offset, int length) {
+			content += new String(chars, offset, length);
 		}
 		
 		/**
@@ -370,28 +416,34 @@ public class JSONReader {
 	/**
 	 * A state that matches (floating point) numbers in JSON format 
 	 */
-	private static class JSONNumber extends StateAdapter{
+	private static class JSONNumber extends StateAdapter implements PredictiveState{
 
 		private String content = "";
 		private boolean predecimalpoint = true;
 		private boolean preexponent = true;
 		
+		// Skip leading whitespace, then start with a minus or a digit
+		@Override
+		public boolean canStartWith(int c) {
+			return Character.isWhitespace(c) || '-' == c || Character.isDigit(c);
+		}
+
 		@Override
 		public IStateChange feed(int c){
 			// If we have not begun matching anything, just consume
 			if ("".equals(content) && Character.isWhitespace(c))
-				return new Consume();
+				return WHITESPACE;
 			
 			// If we read a minus as the first character
 			if ('-' == (char) c && "".equals(content)){
 				content += (char) c;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// If we read anything but a digit to start the number, fail
 			if (("".equals(content)||"-".equals(content)) 
 					&& !Character.isDigit(c)){
-				return new Fail();
+				return Fail.INSTANCE;
 			}
 			
 			// If we have not started and have a digit
@@ -400,22 +452,22 @@ public class JSONReader {
 				if (Character.isDigit(c)){
 					// We cannot have two leading zeros
 					if ('0' == (char) c && ("0".equals(content)||"-0".equals(content))){
-						return new Fail();
+						return Fail.INSTANCE;
 					}
 					content += (char) c;
-					return new Consume();
+					return Consume.INSTANCE;
 				}
 				// We are going to match digits after the decimal point
 				if ('.' == (char) c){
 					predecimalpoint = false;
 					content += (char) c;
-					return new Consume();
+					return Consume.INSTANCE;
 				}
 				// We are going to match an exponent
 				if ('e' == (char) c || 'E' == (char) c){
 					preexponent = false;
 					content += (char) c;
-					return new Consume();
+					return Consume.INSTANCE;
 				}
 				// If we read anything that does not extend our number, finish
 				return new Accept(content);
@@ -425,18 +477,18 @@ public class JSONReader {
 			if (!predecimalpoint && preexponent){
 				// We need at least one digit after a decimal point
 				if (!Character.isDigit(c) && content.endsWith(".")){
-					return new Fail();
+					return Fail.INSTANCE;
 				}
 				// Consume any digits
 				if (Character.isDigit(c)){
 					content += (char) c;
-					return new Consume();
+					return Consume.INSTANCE;
 				}
 				// We are going to match an exponent
 				if ('e' == (char) c || 'E' == (char) c){
 					preexponent = false;
 					content += (char) c;
-					return new Consume();
+					return Consume.INSTANCE;
 				}
 				// If we read anything that does not extend our number, finish
 				return new Accept(content);
@@ -450,12 +502,12 @@ public class JSONReader {
 					(content.endsWith("e") ||
 					content.endsWith("E"))){
 					content += (char) c;
-					return new Consume();
+					return Consume.INSTANCE;
 				}
 				// Match any digits after the E (or e)
 				if (Character.isDigit(c)){
 					content += (char) c;
-					return new Consume();
+					return Consume.INSTANCE;
 				}
 				// If we have a valid exponent
 				if (Character.isDigit(content.charAt(content.length()-1))){
@@ -465,7 +517,7 @@ public class JSONReader {
 			}
 			
 			// If there is no way this can become a number, fail
-			return new Fail();
+			return Fail.INSTANCE;
 		}
 		
 		@Override
@@ -480,14 +532,20 @@ public class JSONReader {
 	/**
 	 * A state that matches "true", "false" or "null"
 	 */
-	private static class JSONConstant extends StateAdapter{
+	private static class JSONConstant extends StateAdapter implements PredictiveState{
 
 		private String content = "";
 		
+		// Skip leading whitespace, then start with the first letter of a constant
+		@Override
+		public boolean canStartWith(int c) {
+			return Character.isWhitespace(c) || 't' == c || 'f' == c || 'n' == c;
+		}
+
 		public IStateChange feed(int c) {
 			// If we have not begun matching anything, just consume
 			if ("".equals(content) && Character.isWhitespace(c))
-				return new Consume();
+				return WHITESPACE;
 			
 			// If we are done, accept
 			if (validContent())
@@ -496,11 +554,11 @@ public class JSONReader {
 			// If what we are reading can match either "true", "false" or "null", consume
 			if (c != -1 && canComplete((char)c)){
 				content += (char) c;
-				return new Consume();
+				return Consume.INSTANCE;
 			}
 			
 			// If there is no way this can become either "true", "false" or "null", fail
-			return new Fail();
+			return Fail.INSTANCE;
 		}
 		
 		/**
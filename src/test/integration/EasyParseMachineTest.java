@@ -3,27 +3,76 @@ package test.integration;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.swing.tree.TreeModel;
 
+import org.epm.edu.CharClass;
+import org.epm.edu.CharSource;
 import org.epm.edu.EasyParseMachine;
+import org.epm.edu.ElementSplitter;
+import org.epm.edu.FastStateAdapter;
+import org.epm.edu.LearnableState;
+import org.epm.edu.ParseCancelledException;
+import org.epm.edu.ParseListener;
+import org.epm.edu.ParseResult;
+import org.epm.edu.ParseSession;
+import org.epm.edu.ParseSubscriber;
 import org.epm.edu.ParseTreeModel;
 import org.epm.edu.ParseTreeNode;
+import org.epm.edu.PredictiveState;
+import org.epm.edu.ReaderCharSource;
+import org.epm.edu.RunListener;
+import org.epm.edu.SessionPool;
 import org.epm.edu.State;
 import org.epm.edu.StateAdapter;
+import org.epm.edu.StateBuilder;
+import org.epm.edu.StructuralIndex;
 import org.epm.edu.statechanges.Accept;
 import org.epm.edu.statechanges.Closure;
 import org.epm.edu.statechanges.Consume;
+import org.epm.edu.statechanges.ConsumeUntil;
+import org.epm.edu.statechanges.ConsumeWhile;
 import org.epm.edu.statechanges.Fail;
 import org.epm.edu.statechanges.Goto;
 import org.epm.edu.statechanges.Guess;
 import org.epm.edu.statechanges.IStateChange;
+import org.epm.edu.statechanges.OrderedGuess;
 import org.epm.edu.statechanges.UnknownStateChangeException;
+import org.epm.edu.statechanges.SkipTo;
+import org.epm.edu.statechanges.SkipToStructural;
 import org.epm.edu.statechanges.Split;
 import org.junit.Test;
 
 public class EasyParseMachineTest {
 	
+	private int neverFed = 0;
+	private int failFed = 0;
+	private boolean flakyFails = true;
+	private int digitsFed = 0;
+	private int structuresFed = 0;
+	private AtomicInteger listsOpened = new AtomicInteger(0);
+	
 	/**
 	 * Consume the "1" with the "test" state, 
 	 * Guess "test2" or "fail"
@@ -130,6 +179,37 @@ public class EasyParseMachineTest {
 		machine.parse("test");
 	}
 	
+	/**
+	 * Throw exception when freezing with an unregistered state id
+	 */
+	@Test(expected=UnknownStateChangeException.class)
+	public void testInvalidStateId() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("");
+		machine.addState(new SomethingOrFailOnEmpty(new Goto(machine.getStateId("magic"))), "test");
+		
+		//Then
+		machine.freeze();
+	}
+	
+	/**
+	 * Throw exception on a state change of an unknown kind
+	 */
+	@Test(expected=UnknownStateChangeException.class)
+	public void testUnknownKind() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("");
+		machine.addState(new SomethingOrFailOnEmpty(new IStateChange(){
+			@Override
+			public int getKind() {
+				return 42;
+			}
+		}), "test");
+		
+		//Then
+		machine.parse("test");
+	}
+	
 	/**
 	 * Throw exception on invalid start state
 	 */
@@ -242,6 +322,29 @@ public class EasyParseMachineTest {
 		assertEquals(null, root.getChildAt(0).getContent());
 	}
 	
+	/**
+	 * Same as testGotoAccept, but "test2" refers to "test" by id
+	 */
+	@Test
+	public void testGotoById() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("1");
+		int test = machine.getStateId("test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Accept("magic")),	"test");
+		machine.addState(new SomethingOrOtherOnNumber(new Goto(test), new Closure()), 	"test2");
+		
+		//When
+		ParseTreeModel model = machine.parse("test2");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertNotEquals(null, root);
+		assertFalse(machine.isAmbiguous());
+		assertEquals(1, root.getChildCount());
+		assertEquals("test", root.getChildAt(0).getName());
+		assertEquals("magic", root.getChildAt(0).getContent());
+	}
+	
 	/**
 	 * Closure on EOF with the "test" state
 	 * Produce
@@ -288,147 +391,1616 @@ public class EasyParseMachineTest {
 		assertEquals("magic", root.getContent());
 	}
 	
-	/******
-	 ****** END OF TEST CASES, START OF HELPER CLASSES
-	 ******/
-
 	/**
-	 * If EOF is read: return response
-	 * Else: return fail
+	 * Guess "test2" or "never" on the "1" with the "test" state
+	 * "never" cannot start with "1" and is never fed
+	 * Consume the "1" and Closure on EOF with the "test2" state
+	 * Produce
+	 *   -> test : 
+	 *      -> test2 :
 	 */
-	private class SomethingOrFailOnEmpty extends StateAdapter{
-
-		private final IStateChange response;
-		private boolean visited = false;
-		
-		public SomethingOrFailOnEmpty(IStateChange change){
-			response = change;
-		}
+	@Test
+	public void testGuessPredicted() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("1");
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("test2", "never"), new Closure()),	"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Closure()),								"test2");
+		machine.addState(new NeverStarts(),															"never");
 		
-		public SomethingOrFailOnEmpty(IStateChange change, boolean visited){
-			this(change);
-			this.visited = visited;
-		} 
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
 		
-		@Override
-		public IStateChange feed(int c) {
-			if (visited)
-				return new Closure();
-			visited = true;
-			if (c == -1)
-				return response;
-			else
-				return new Fail();
-		}
+		//Then
+		assertEquals(0, neverFed);
+		assertFalse(machine.isAmbiguous());
+		assertEquals(1, root.getChildCount());
+		assertEquals("test2", root.getChildAt(0).getName());
+	}
+	
+	/**
+	 * Guess "never" on the "1" with the "test" state
+	 * "never" cannot start with "1", so we fail
+	 */
+	@Test
+	public void testGuessAllPruned() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("1");
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("never"), new Closure()),	"test");
+		machine.addState(new NeverStarts(),													"never");
 		
-		@Override
-		public State copy() {
-			return new SomethingOrFailOnEmpty(response, visited);
-		}
+		//When
+		ParseTreeModel model = machine.parse("test");
 		
+		//Then
+		assertNull(model);
+		assertEquals(0, neverFed);
+		assertTrue(machine.getDeletionSnapshot().contains("never"));
 	}
 	
 	/**
-	 * If digit is read: consume
-	 * Else: return response
+	 * Guess "test2" or "fail" on the "1" with the "test" state, 20 times
+	 * "fail" fails on the "1", after a while it is no longer fed
+	 * Produce
+	 *   -> test : 
+	 *      -> test2 :
 	 */
-	private class ConsumeOrSomethingOnNumber extends StateAdapter{
-
-		private final IStateChange response;
-		private boolean visited = false;
+	@Test
+	public void testGuessLearned() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setAdaptivePrediction(true);
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("test2", "fail"), new Closure()),	"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Closure()),								"test2");
+		machine.addState(new CountingFail(),														"fail");
 		
-		public ConsumeOrSomethingOnNumber(IStateChange change){
-			response = change;
+		for (int i = 0; i < 20; i++){
+			//When
+			machine.setInput("1");
+			ParseTreeModel model = machine.parse("test");
+			ParseTreeNode root = model.getRoot();
+			
+			//Then
+			assertFalse(machine.isAmbiguous());
+			assertEquals(1, root.getChildCount());
+			assertEquals("test2", root.getChildAt(0).getName());
 		}
-		
-		public ConsumeOrSomethingOnNumber(IStateChange change, boolean visited){
-			this(change);
-			this.visited = visited;
+		assertTrue(failFed < 20);
+	}
+	
+	/**
+	 * Same as testGuessLearned with an ordered guess of "flaky",
+	 * which fails on the "1" until it consumes it in the last parse.
+	 * "flaky" is not a LearnableState, so it is never skipped
+	 */
+	@Test
+	public void testGuessNotLearnable() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setAdaptivePrediction(true);
+		machine.addState(new SomethingOrOtherOnNumber(new OrderedGuess("flaky", "test2"), new Closure()),	"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Closure()),										"test2");
+		machine.addState(new FlakyDigits(),																	"flaky");
+		for (int i = 0; i < 20; i++){
+			machine.setInput("1");
+			assertEquals("test2", machine.parse("test").getRoot().getChildAt(0).getName());
 		}
 		
-		@Override
-		public IStateChange feed(int c) {
-			if (Character.isDigit(c))
-				return new Consume();
-			else
-				return response;
-		}
+		//When
+		flakyFails = false;
+		machine.setInput("1");
+		ParseTreeModel model = machine.parse("test");
 		
-		@Override
-		public State copy() {
-			return new ConsumeOrSomethingOnNumber(response, visited);
+		//Then
+		assertEquals("flaky", model.getRoot().getChildAt(0).getName());
+	}
+	
+	/**
+	 * Same as testGuessLearned, adaptive prediction is off
+	 * by default so "fail" is fed every time
+	 */
+	@Test
+	public void testGuessNotLearned() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("test2", "fail"), new Closure()),	"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Closure()),								"test2");
+		machine.addState(new CountingFail(),														"fail");
+		
+		//When
+		for (int i = 0; i < 20; i++){
+			machine.setInput("1");
+			machine.parse("test");
 		}
 		
+		//Then
+		assertEquals(20, failFed);
 	}
 	
 	/**
-	 * If digit is read: consume
-	 * Else: return response
+	 * Guess "a" or "b" on the "1" with the "test" state,
+	 * both go to "digits" which consumes "123"
+	 * The second "digits" is merged into the first one
+	 * Produce
+	 *   -> test : 
+	 *      -> a :
+	 *         -> digits : "magic"
+	 * Produce
+	 *   -> test : 
+	 *      -> b :
+	 *         -> digits : "magic"
 	 */
-	private class SomethingOrOtherOnNumber extends StateAdapter{
-
-		private final IStateChange response;
-		private final IStateChange response2;
-		private boolean visited = false;
+	@Test
+	public void testMergeEquivalent() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("123");
+		machine.setMergeEquivalent(true);
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("a", "b"), new Closure()),	"test");
+		machine.addState(new SomethingOrGotoOnEmpty(new Closure(), "digits"),				"a");
+		machine.addState(new SomethingOrGotoOnEmpty(new Closure(), "digits"),				"b");
+		machine.addState(new CountingDigits(),												"digits");
 		
-		public SomethingOrOtherOnNumber(IStateChange change, IStateChange change2){
-			response = change;
-			response2 = change2;
-		}
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
 		
-		public SomethingOrOtherOnNumber(IStateChange change, IStateChange change2, boolean visited){
-			this(change, change2);
-			this.visited = visited;
-		}
+		//Then
+		assertEquals(5, digitsFed);
+		assertTrue(machine.isAmbiguous());
+		assertEquals(1, root.getChildCount());
+		assertEquals("a", root.getChildAt(0).getName());
+		assertEquals("digits", root.getChildAt(0).getChildAt(0).getName());
+		assertEquals("magic", root.getChildAt(0).getChildAt(0).getContent());
+	}
+	
+	/**
+	 * Same as testMergeEquivalent, without merging
+	 * Both "digits" states are fed all the way
+	 */
+	@Test
+	public void testNoMergeEquivalent() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("123");
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("a", "b"), new Closure()),	"test");
+		machine.addState(new SomethingOrGotoOnEmpty(new Closure(), "digits"),				"a");
+		machine.addState(new SomethingOrGotoOnEmpty(new Closure(), "digits"),				"b");
+		machine.addState(new CountingDigits(),												"digits");
 		
-		@Override
-		public IStateChange feed(int c) {
-			if (Character.isDigit(c))
-				return response;
-			else
-				return response2;
-		}
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
 		
-		@Override
-		public State copy() {
-			return new SomethingOrOtherOnNumber(response, response2, visited);
-		}
+		//Then
+		assertEquals(8, digitsFed);
+		assertTrue(machine.isAmbiguous());
+		assertEquals("a", root.getChildAt(0).getName());
+		assertEquals("magic", root.getChildAt(0).getChildAt(0).getContent());
+	}
+	
+	/**
+	 * Same as testMergeEquivalent, with memoization instead of merging
+	 * The second "digits" reuses the first one
+	 */
+	@Test
+	public void testMemoize() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("123");
+		machine.setMemoize(16);
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("a", "b"), new Closure()),	"test");
+		machine.addState(new SomethingOrGotoOnEmpty(new Closure(), "digits"),				"a");
+		machine.addState(new SomethingOrGotoOnEmpty(new Closure(), "digits"),				"b");
+		machine.addState(new CountingDigits(),												"digits");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
 		
+		//Then
+		assertEquals(4, digitsFed);
+		assertTrue(machine.isAmbiguous());
+		assertEquals(1, root.getChildCount());
+		assertEquals("digits", root.getChildAt(0).getChildAt(0).getName());
+		assertEquals("magic", root.getChildAt(0).getChildAt(0).getContent());
 	}
 	
 	/**
-	 * If EOF is read: return response
-	 * Else: goto other state
+	 * OrderedGuess "slow" or "fast" on the "1" with the "test" state
+	 * "fast" accepts right away and wins, "slow" is removed
+	 * Consume "12" and Closure on EOF with the "test" state
+	 * Produce
+	 *   -> test : 
+	 *      -> fast : "fast"
 	 */
-	private class SomethingOrGotoOnEmpty extends StateAdapter{
-
-		private final IStateChange response;
-		private final String otherState;
-		private boolean visited = false;
+	@Test
+	public void testOrderedGuess() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("12");
+		machine.addState(new FirstOrConsume(new OrderedGuess("slow", "fast")),				"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Accept("slow")),					"slow");
+		machine.addState(new SomethingOrOtherOnNumber(new Accept("fast"), new Accept("fast")),	"fast");
 		
-		public SomethingOrGotoOnEmpty(IStateChange change, String other){
-			response = change;
-			otherState = other;
-		}
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
 		
-		public SomethingOrGotoOnEmpty(IStateChange change, String other, boolean visited){
-			this(change, other);
-			this.visited = visited;
-		}
+		//Then
+		assertFalse(machine.isAmbiguous());
+		assertEquals(1, root.getChildCount());
+		assertEquals("fast", root.getChildAt(0).getName());
+	}
+	
+	/**
+	 * OrderedGuess "second" or "fast" on the "1" with the "test" state
+	 * Both accept right away, "second" is given first and wins
+	 * Produce
+	 *   -> test : 
+	 *      -> second : "second"
+	 */
+	@Test
+	public void testOrderedGuessTie() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("12");
+		machine.addState(new FirstOrConsume(new OrderedGuess("second", "fast")),					"test");
+		machine.addState(new SomethingOrOtherOnNumber(new Accept("second"), new Accept("second")),	"second");
+		machine.addState(new SomethingOrOtherOnNumber(new Accept("fast"), new Accept("fast")),		"fast");
 		
-		@Override
-		public IStateChange feed(int c) {
-			if (c == -1)
-				return response;
-			else
-				return new Goto(otherState);
-		}
-
-		@Override
-		public State copy() {
-			return new SomethingOrGotoOnEmpty(response, otherState, visited);
-		}
-
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertFalse(machine.isAmbiguous());
+		assertEquals(1, root.getChildCount());
+		assertEquals("second", root.getChildAt(0).getName());
 	}
 	
+	/**
+	 * OrderedGuess "fail" or "digits" on the "1" with the "test" state
+	 * "fail" fails, "digits" consumes the "1" and its Closure on EOF
+	 * is the only change left to decide the choice
+	 * Produce
+	 *   -> test : 
+	 *      -> digits :
+	 */
+	@Test
+	public void testOrderedGuessClosure() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("1");
+		machine.addState(new SomethingOrOtherOnNumber(new OrderedGuess("fail", "digits"), new Closure()),	"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Closure()),									"digits");
+		machine.addState(new CountingFail(),															"fail");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertEquals(1, root.getChildCount());
+		assertEquals("digits", root.getChildAt(0).getName());
+	}
+	
+	/**
+	 * Same as testOrderedGuess with a normal Guess, both survive
+	 */
+	@Test
+	public void testUnorderedGuess() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("12");
+		machine.addState(new FirstOrConsume(new Guess("slow", "fast")),						"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Accept("slow")),					"slow");
+		machine.addState(new SomethingOrOtherOnNumber(new Accept("fast"), new Accept("fast")),	"fast");
+		
+		//When
+		machine.parse("test");
+		
+		//Then
+		assertTrue(machine.isAmbiguous());
+	}
+	
+	/**
+	 * Same as testUnorderedGuess with at most one builder
+	 * The oldest builder is kept
+	 */
+	@Test
+	public void testMaxBuilders() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("12");
+		machine.setMaxBuilders(1, null);
+		machine.addState(new FirstOrConsume(new Guess("slow", "fast")),						"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Accept("slow")),					"slow");
+		machine.addState(new SomethingOrOtherOnNumber(new Accept("fast"), new Accept("fast")),	"fast");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertFalse(machine.isAmbiguous());
+		assertEquals("slow", root.getChildAt(0).getName());
+	}
+	
+	/**
+	 * Same as testMaxBuilders, the newest builder is kept
+	 */
+	@Test
+	public void testMaxBuildersPriority() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("12");
+		machine.setMaxBuilders(1, new Comparator<StateBuilder>(){
+			@Override
+			public int compare(StateBuilder a, StateBuilder b) {
+				return Long.compare(b.getBuilderId(), a.getBuilderId());
+			}
+		});
+		machine.addState(new FirstOrConsume(new Guess("slow", "fast")),						"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Accept("slow")),					"slow");
+		machine.addState(new SomethingOrOtherOnNumber(new Accept("fast"), new Accept("fast")),	"fast");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertFalse(machine.isAmbiguous());
+		assertEquals("fast", root.getChildAt(0).getName());
+	}
+	
+	/**
+	 * Consume "1234567890" with the "digits" state, read in blocks of 3 characters
+	 * Accept on EOF with the "digits" state
+	 * Produce
+	 *   -> test : 
+	 *      -> digits : "magic"
+	 */
+	@Test
+	public void testConsumeAcrossBlocks() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setInput(new ReaderCharSource(new StringReader("1234567890"), 3));
+		machine.addState(new SomethingOrOtherOnNumber(new Goto("digits"), new Closure()),	"test");
+		machine.addState(new CountingDigits(),												"digits");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertEquals(11, digitsFed);
+		assertEquals(1, root.getChildCount());
+		assertEquals("magic", root.getChildAt(0).getContent());
+	}
+	
+	@Test
+	public void testFastState() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setInput(new ReaderCharSource(new StringReader("1234567890"), 3));
+		int digits = machine.getStateId("digits");
+		machine.addState(new FastStart(new int[]{ digits }),	"test");
+		machine.addState(new FastDigits(),						"digits");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertEquals(11, digitsFed);
+		assertEquals(1, root.getChildCount());
+		assertEquals("digits", root.getChildAt(0).getName());
+		assertEquals("fast", root.getChildAt(0).getContent());
+	}
+	
+	@Test
+	public void testFastStateGuess() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setAdaptivePrediction(false);
+		machine.setInput("12");
+		int digits = machine.getStateId("digits");
+		int fail = machine.getStateId("fail");
+		machine.addState(new FastStart(new int[]{ fail, digits }),	"test");
+		machine.addState(new FastDigits(),							"digits");
+		machine.addState(new CountingFail(),						"fail");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertFalse(machine.isAmbiguous());
+		assertEquals(1, failFed);
+		assertEquals(1, root.getChildCount());
+		assertEquals("fast", root.getChildAt(0).getContent());
+	}
+	
+	@Test
+	public void testFastStateFeed() throws IOException{
+		//Given
+		FastDigits state = new FastDigits();
+		
+		//When
+		IStateChange consume = state.feed('1');
+		IStateChange accept = state.feed('a');
+		
+		//Then
+		assertTrue(consume instanceof Consume);
+		assertTrue(accept instanceof Accept);
+		assertEquals("fast", ((Accept) accept).getContent());
+	}
+	
+	@Test
+	public void testConsumeWhile() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setInput(new ReaderCharSource(new StringReader("1234567890"), 3));
+		machine.addState(new SomethingOrOtherOnNumber(new Goto("digits"), new Closure()),	"test");
+		machine.addState(new RunDigits(new ConsumeWhile(CharClass.DIGITS)),				"digits");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertEquals(2, digitsFed);
+		assertEquals(1, root.getChildCount());
+		assertEquals("1234567890", root.getChildAt(0).getContent());
+	}
+	
+	@Test
+	public void testConsumeUntilAmbiguous() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setInput("1234");
+		machine.addState(new SomethingOrOtherOnNumber(new Guess("digits", "digits2"), new Closure()),	"test");
+		machine.addState(new RunDigits(new ConsumeUntil(CharClass.DIGITS.not())),						"digits");
+		machine.addState(new RunDigits(new ConsumeUntil(CharClass.of("3"))),							"digits2");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertTrue(machine.isAmbiguous());
+		assertEquals(5, digitsFed);
+		assertEquals(1, root.getChildCount());
+		assertEquals("1234", root.getChildAt(0).getContent());
+	}
+	
+	@Test
+	public void testSkipTo() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setInput(new ReaderCharSource(new StringReader("1234567"), 2));
+		machine.addState(new SomethingOrOtherOnNumber(new Goto("digits"), new Closure()),	"test");
+		machine.addState(new RunDigits(new SkipTo("5")),									"digits");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertEquals(3, digitsFed);
+		assertEquals("1234567", root.getChildAt(0).getContent());
+	}
+	
+	@Test
+	public void testSkipToStructural() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setStructuralIndex(StructuralIndex.json());
+		machine.setInput(new ReaderCharSource(new StringReader("{\"a]\\\"\": [12, true]}"), 4));
+		machine.addState(new Structure(), "test");
+		
+		//When
+		ParseTreeModel model = machine.parse("test");
+		ParseTreeNode root = model.getRoot();
+		
+		//Then
+		assertEquals("{\"\":[,]}", root.getContent());
+		assertEquals(9, structuresFed);
+	}
+	
+	@Test(expected=UnknownStateChangeException.class)
+	public void testSkipToStructuralWithoutIndex() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.setInput("{}");
+		machine.addState(new Structure(), "test");
+		
+		//When
+		machine.parse("test");
+	}
+	
+	@Test
+	public void testParseParallel() throws IOException{
+		//Given
+		StringBuilder input = new StringBuilder(" [");
+		for (int i = 0; i < 5000; i++)
+			input.append(i == 0 ? "" : ", ").append(i);
+		input.append("] ");
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		machine.setInput(input.toString());
+		String sequential = dump(machine.parse("list").getRoot());
+		listsOpened.set(0);
+		machine.setInput(input.toString());
+		
+		//When
+		ParseTreeModel model = machine.parseParallel("list", "list", ElementSplitter.json(), new ForkJoinPool(4));
+		
+		//Then
+		assertTrue(listsOpened.get() > 1);
+		assertFalse(machine.isAmbiguous());
+		assertEquals(5000, model.getRoot().getChildCount());
+		assertEquals(sequential, dump(model.getRoot()));
+	}
+	
+	/**
+	 * The words around the list are children of the same "doc" node as
+	 * the numbers, and are kept only once
+	 */
+	@Test
+	public void testParseParallelWrapped() throws IOException{
+		//Given
+		StringBuilder input = new StringBuilder("head [");
+		for (int i = 0; i < 5000; i++)
+			input.append(i == 0 ? "" : ", ").append(i);
+		input.append("] tail");
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new WordsAndNumbers(), "doc");
+		machine.addState(new Word(), "word");
+		machine.addState(new Number(), "number");
+		machine.setInput(input.toString());
+		String sequential = dump(machine.parse("doc").getRoot());
+		listsOpened.set(0);
+		machine.setInput(input.toString());
+		
+		//When
+		ParseTreeModel model = machine.parseParallel("doc", "doc", ElementSplitter.json(), new ForkJoinPool(4));
+		
+		//Then
+		assertTrue(listsOpened.get() > 1);
+		assertEquals(5002, model.getRoot().getChildCount());
+		assertEquals(sequential, dump(model.getRoot()));
+	}
+	
+	@Test
+	public void testParseParallelFallback() throws IOException{
+		//Given
+		StringBuilder input = new StringBuilder("[");
+		for (int i = 0; i < 5000; i++)
+			input.append(i == 0 ? "" : ", ").append(i == 4000 ? "x" : String.valueOf(i));
+		input.append("]");
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		machine.setInput(input.toString());
+		
+		//When
+		ParseTreeModel model = machine.parseParallel("list", "list", ElementSplitter.json(), new ForkJoinPool(4));
+		
+		//Then
+		assertNull(model);
+		assertTrue(machine.getDeletionSnapshot().contains("list"));
+	}
+	
+	@Test
+	public void testSessionPool() throws Exception{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		final SessionPool pool = new SessionPool(machine, 4);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+		
+		//When
+		for (int i = 0; i < 200; i++){
+			final String input = "[" + i + ", " + (i + 1) + "]";
+			results.add(executor.submit(new Callable<String>(){
+				@Override
+				public String call() throws Exception {
+					ParseSession session = pool.acquire();
+					try {
+						session.setInput(input);
+						ParseTreeModel model = session.parse("list");
+						assertFalse(session.isAmbiguous());
+						ParseTreeNode root = model.getRoot();
+						return root.getChildAt(0).getContent() + " " + root.getChildAt(1).getContent();
+					} finally {
+						pool.release(session);
+					}
+				}
+			}));
+		}
+		
+		//Then
+		for (int i = 0; i < 200; i++)
+			assertEquals(i + " " + (i + 1), results.get(i).get());
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testSessionPoolReuse() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		SessionPool pool = new SessionPool(machine, 1);
+		ParseSession first = pool.acquire();
+		first.setInput("[1]");
+		first.parse("list");
+		
+		//When
+		pool.release(first);
+		ParseSession second = pool.acquire();
+		ParseSession third = pool.acquire();
+		
+		//Then
+		assertSame(first, second);
+		assertNotSame(second, third);
+		assertTrue(second.getDeletionSnapshot().isEmpty());
+		second.setInput("[2, 3]");
+		assertEquals(2, second.parse("list").getRoot().getChildCount());
+	}
+	
+	@Test(expected = UnknownStateChangeException.class)
+	public void testNewSession() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("[1]");
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ParseSession session = machine.newSession();
+		
+		//When
+		machine.addState(new Number(), "other");
+		machine.parse("list");
+		
+		//Then
+		assertNotSame(machine.freeze(), session.getGrammar());
+		assertFalse(session.getGrammar().hasState("other"));
+		session.setInput("1");
+		session.parse("other");
+	}
+	
+	@Test
+	public void testParseAll() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ArrayList<CharSource> inputs = new ArrayList<CharSource>();
+		for (int i = 0; i < 100; i++)
+			inputs.add(new ReaderCharSource(new StringReader("[" + i + "]")));
+		inputs.set(10, new ReaderCharSource(new StringReader("[x]")));
+		inputs.set(20, new CharSource(16){
+			@Override
+			protected int fill(char[] buffer) throws IOException {
+				throw new IOException("Broken input");
+			}
+		});
+		final ArrayList<ParseResult> results = new ArrayList<ParseResult>();
+		
+		//When
+		machine.parseAll(inputs, "list", new Consumer<ParseResult>(){
+			@Override
+			public void accept(ParseResult result) {
+				results.add(result);
+			}
+		});
+		
+		//Then
+		assertEquals(100, results.size());
+		for (int i = 0; i < 100; i++){
+			ParseResult result = results.get(i);
+			assertEquals(i, result.getIndex());
+			assertSame(inputs.get(i), result.getInput());
+			if (i == 10){
+				assertFalse(result.isParsed());
+				assertNull(result.getError());
+				assertTrue(result.getDeletionSnapshot().contains("list"));
+			} else if (i == 20){
+				assertFalse(result.isParsed());
+				assertTrue(result.getError() instanceof IOException);
+			} else {
+				assertTrue(result.isParsed());
+				assertEquals(String.valueOf(i), result.getModel().getRoot().getChildAt(0).getContent());
+			}
+		}
+	}
+	
+	@Test
+	public void testParseAllStream() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		machine.setExecutor(executor);
+		ArrayList<CharSource> inputs = new ArrayList<CharSource>();
+		for (int i = 0; i < 2000; i++)
+			inputs.add(new ReaderCharSource(new StringReader("[" + i + ", 1]")));
+		
+		//When
+		Stream<ParseResult> results = machine.parseAll(inputs, "list", false);
+		
+		//Then
+		BitSet seen = new BitSet();
+		Iterator<ParseResult> it = results.iterator();
+		while (it.hasNext()){
+			ParseResult result = it.next();
+			assertTrue(result.isParsed());
+			assertEquals(String.valueOf(result.getIndex()), result.getModel().getRoot().getChildAt(0).getContent());
+			seen.set(result.getIndex());
+		}
+		assertEquals(2000, seen.cardinality());
+		assertFalse(executor.isShutdown());
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testParseAllReleasesResults() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ArrayList<CharSource> inputs = new ArrayList<CharSource>();
+		for (int i = 0; i < 3000; i++)
+			inputs.add(new ReaderCharSource(new StringReader("[" + i + "]")));
+		final ArrayList<WeakReference<ParseTreeModel>> handedOut = new ArrayList<WeakReference<ParseTreeModel>>();
+		final boolean[] released = new boolean[1];
+		
+		//When
+		machine.parseAll(inputs, "list", new Consumer<ParseResult>(){
+			@Override
+			public void accept(ParseResult result) {
+				handedOut.add(new WeakReference<ParseTreeModel>(result.getModel()));
+				if (result.getIndex() == 2999){
+					for (int attempt = 0; attempt < 10 && !released[0]; attempt++){
+						System.gc();
+						released[0] = handedOut.get(0).get() == null;
+					}
+				}
+			}
+		});
+		
+		//Then
+		assertTrue(released[0]);
+	}
+	
+	@Test
+	public void testParseAllClose() throws Exception{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		machine.setExecutor(executor);
+		CountDownLatch started = new CountDownLatch(1);
+		ArrayList<CharSource> inputs = new ArrayList<CharSource>();
+		inputs.add(new ReaderCharSource(new StringReader("[1]")));
+		inputs.add(new EndlessWhitespace(started));
+		Stream<ParseResult> results = machine.parseAll(inputs, "list", false);
+		assertEquals(0, results.iterator().next().getIndex());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		//When
+		results.close();
+		
+		//Then
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+	
+	@Test(expected = UnknownStateChangeException.class)
+	public void testParseAllInvalidStart() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new Number(), "number");
+		
+		//Then
+		machine.parseAll(new ArrayList<CharSource>(), "list", true);
+	}
+	
+	@Test
+	public void testParseAsync() throws Exception{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		
+		//When
+		CompletableFuture<ParseTreeModel> future = machine.parseAsync(new ReaderCharSource(new StringReader("[1, 2]")), "list", executor);
+		
+		//Then
+		assertEquals(2, future.get(5, TimeUnit.SECONDS).getRoot().getChildCount());
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testParseAsyncCancel() throws Exception{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		final CountDownLatch started = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		CompletableFuture<ParseTreeModel> future = machine.parseAsync(new EndlessWhitespace(started), "list", executor);
+		started.await(5, TimeUnit.SECONDS);
+		
+		//When
+		future.cancel(true);
+		
+		//Then
+		assertTrue(future.isCancelled());
+		executor.submit(new Runnable(){
+			@Override
+			public void run() {
+			}
+		}).get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testParseAsyncTimeout() throws Exception{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		
+		//When
+		CompletableFuture<ParseTreeModel> future = machine.parseAsync(new EndlessWhitespace(new CountDownLatch(1)), "list", executor, 20, TimeUnit.MILLISECONDS);
+		
+		//Then
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("The parse should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ParseCancelledException);
+		}
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testParseAsyncTimeoutExploding() throws Exception{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new Exploding(), "s");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		char[] input = new char[200];
+		Arrays.fill(input, 'x');
+		
+		//When
+		CompletableFuture<ParseTreeModel> future = machine.parseAsync(new ReaderCharSource(new StringReader(new String(input))), "s", executor, 20, TimeUnit.MILLISECONDS);
+		
+		//Then
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("The parse should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ParseCancelledException);
+		}
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void testFeedChunks() throws IOException{
+		//Given
+		StringBuilder input = new StringBuilder("[");
+		for (int i = 0; i < 3000; i++)
+			input.append(i == 0 ? "" : ", ").append(i);
+		input.append("]");
+		EasyParseMachine machine = new EasyParseMachine(input.toString());
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		String pulled = dump(machine.parse("list").getRoot());
+		ParseSession session = machine.newSession();
+		byte[] bytes = input.toString().getBytes();
+		
+		//When
+		session.begin("list");
+		for (int i = 0; i < bytes.length; i += 7)
+			assertTrue(session.feed(ByteBuffer.wrap(bytes, i, Math.min(7, bytes.length - i))));
+		ParseTreeModel model = session.endOfInput();
+		
+		//Then
+		assertEquals(pulled, dump(model.getRoot()));
+		assertFalse(session.isAmbiguous());
+	}
+	
+	@Test
+	public void testFeedFails() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ParseSession session = machine.newSession();
+		session.begin("list");
+		ByteBuffer chunk = ByteBuffer.wrap("[1, x, 2]".getBytes());
+		
+		//When
+		boolean parsing = session.feed(chunk);
+		
+		//Then
+		assertFalse(parsing);
+		assertNull(session.endOfInput());
+		assertTrue(session.getDeletionSnapshot().contains("list"));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testFeedWithoutBegin() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		ParseSession session = machine.newSession();
+		
+		//Then
+		session.feed(ByteBuffer.wrap("[1]".getBytes()));
+	}
+	
+	@Test
+	public void testParseSubscriber() throws Exception{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		ParseSubscriber subscriber = new ParseSubscriber(machine.newSession(), "list");
+		SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+		publisher.subscribe(subscriber);
+		
+		//When
+		for (String chunk : new String[]{ "[1", "2, ", "3", "4]" })
+			publisher.submit(ByteBuffer.wrap(chunk.getBytes()));
+		publisher.close();
+		
+		//Then
+		ParseTreeNode root = subscriber.getResult().get(5, TimeUnit.SECONDS).getRoot();
+		assertEquals(2, root.getChildCount());
+		assertEquals("12", root.getChildAt(0).getContent());
+		assertEquals("34", root.getChildAt(1).getContent());
+	}
+	
+	@Test
+	public void testListener() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("[12, 3]");
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		EventLog log = new EventLog();
+		machine.setListener(log);
+		
+		//When
+		ParseTreeModel model = machine.parse("list");
+		
+		//Then
+		assertEquals("+list@0 +number@1 -number(12)@3 +number@5 -number(3)@6 -list(null)@8 ", log.toString());
+		assertEquals("list", model.getRoot().getName());
+		assertEquals(0, model.getRoot().getChildCount());
+	}
+	
+	@Test
+	public void testListenerAmbiguity() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine("12");
+		machine.addState(new FirstOrConsume(new Guess("slow", "fast")),						"test");
+		machine.addState(new ConsumeOrSomethingOnNumber(new Accept("slow")),					"slow");
+		machine.addState(new SomethingOrOtherOnNumber(new Accept("fast"), new Accept("fast")),	"fast");
+		EventLog log = new EventLog();
+		machine.setListener(log);
+		
+		//When
+		machine.parse("test");
+		
+		//Then
+		assertTrue(machine.isAmbiguous());
+		assertEquals("?2@2 +test@0 +slow@0 -slow(slow)@2 -test(null)@3 ", log.toString());
+	}
+	
+	@Test
+	public void testListenerFeed() throws IOException{
+		//Given
+		EasyParseMachine machine = new EasyParseMachine();
+		machine.addState(new ListOfNumbers(), "list");
+		machine.addState(new Number(), "number");
+		EventLog log = new EventLog();
+		machine.setListener(log);
+		ParseSession session = machine.newSession();
+		session.begin("list");
+		
+		//When
+		session.feed(ByteBuffer.wrap("[1".getBytes()));
+		String first = log.toString();
+		session.feed(ByteBuffer.wrap("2]".getBytes()));
+		session.endOfInput();
+		
+		//Then
+		assertEquals("+list@0 +number@1 ", first);
+		assertEquals("+list@0 +number@1 -number(12)@3 -list(null)@5 ", log.toString());
+	}
+	
+	/******
+	 ****** END OF TEST CASES, START OF HELPER CLASSES
+	 ******/
+	
+	/**
+	 * Print a tree with the names and contents of its nodes
+	 */
+	private String dump(ParseTreeNode node){
+		StringBuilder out = new StringBuilder(node.getName()).append('(').append(node.getContent());
+		for (ParseTreeNode child : node.childList())
+			out.append(' ').append(dump(child));
+		return out.append(')').toString();
+	}
+
+	/**
+	 * If EOF is read: return response
+	 * Else: return fail
+	 */
+	private class SomethingOrFailOnEmpty extends StateAdapter{
+
+		private final IStateChange response;
+		private boolean visited = false;
+		
+		public SomethingOrFailOnEmpty(IStateChange change){
+			response = change;
+		}
+		
+		public SomethingOrFailOnEmpty(IStateChange change, boolean visited){
+			this(change);
+			this.visited = visited;
+		} 
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (visited)
+				return new Closure();
+			visited = true;
+			if (c == -1)
+				return response;
+			else
+				return new Fail();
+		}
+		
+		@Override
+		public State copy() {
+			return new SomethingOrFailOnEmpty(response, visited);
+		}
+		
+	}
+	
+	/**
+	 * If digit is read: consume
+	 * Else: return response
+	 */
+	private class ConsumeOrSomethingOnNumber extends StateAdapter{
+
+		private final IStateChange response;
+		private boolean visited = false;
+		
+		public ConsumeOrSomethingOnNumber(IStateChange change){
+			response = change;
+		}
+		
+		public ConsumeOrSomethingOnNumber(IStateChange change, boolean visited){
+			this(change);
+			this.visited = visited;
+		}
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (Character.isDigit(c))
+				return new Consume();
+			else
+				return response;
+		}
+		
+		@Override
+		public State copy() {
+			return new ConsumeOrSomethingOnNumber(response, visited);
+		}
+		
+	}
+	
+	/**
+	 * If digit is read: consume
+	 * Else: return response
+	 */
+	private class SomethingOrOtherOnNumber extends StateAdapter{
+
+		private final IStateChange response;
+		private final IStateChange response2;
+		private boolean visited = false;
+		
+		public SomethingOrOtherOnNumber(IStateChange change, IStateChange change2){
+			response = change;
+			response2 = change2;
+		}
+		
+		public SomethingOrOtherOnNumber(IStateChange change, IStateChange change2, boolean visited){
+			this(change, change2);
+			this.visited = visited;
+		}
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (Character.isDigit(c))
+				return response;
+			else
+				return response2;
+		}
+		
+		@Override
+		public State copy() {
+			return new SomethingOrOtherOnNumber(response, response2, visited);
+		}
+		
+	}
+	
+	/**
+	 * If EOF is read: return response
+	 * Else: goto other state
+	 */
+	private class SomethingOrGotoOnEmpty extends StateAdapter{
+
+		private final IStateChange response;
+		private final String otherState;
+		private boolean visited = false;
+		
+		public SomethingOrGotoOnEmpty(IStateChange change, String other){
+			response = change;
+			otherState = other;
+		}
+		
+		public SomethingOrGotoOnEmpty(IStateChange change, String other, boolean visited){
+			this(change, other);
+			this.visited = visited;
+		}
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (c == -1)
+				return response;
+			else
+				return new Goto(otherState);
+		}
+
+		@Override
+		public State copy() {
+			return new SomethingOrGotoOnEmpty(response, otherState, visited);
+		}
+
+	}
+	
+	/**
+	 * Cannot start with any character
+	 * If fed anyway: count and fail
+	 */
+	private class NeverStarts extends StateAdapter implements PredictiveState{
+
+		@Override
+		public boolean canStartWith(int c) {
+			return false;
+		}
+		
+		@Override
+		public IStateChange feed(int c) {
+			neverFed++;
+			return new Fail();
+		}
+
+		@Override
+		public State copy() {
+			return new NeverStarts();
+		}
+
+	}
+	
+	/**
+	 * Count and fail
+	 */
+	private class CountingFail extends StateAdapter implements LearnableState{
+
+		@Override
+		public IStateChange feed(int c) {
+			failFed++;
+			return new Fail();
+		}
+
+		@Override
+		public State copy() {
+			return new CountingFail();
+		}
+
+	}
+	
+	/**
+	 * While flakyFails: fail
+	 * If digit is read: consume
+	 * Else: closure
+	 */
+	private class FlakyDigits extends StateAdapter{
+
+		@Override
+		public IStateChange feed(int c) {
+			if (flakyFails)
+				return new Fail();
+			if (Character.isDigit(c))
+				return new Consume();
+			return new Closure();
+		}
+
+		@Override
+		public State copy() {
+			return new FlakyDigits();
+		}
+
+	}
+	
+	/**
+	 * Count and
+	 * If digit is read: consume
+	 * Else: accept "magic"
+	 */
+	private class CountingDigits extends StateAdapter{
+
+		@Override
+		public IStateChange feed(int c) {
+			digitsFed++;
+			if (Character.isDigit(c))
+				return new Consume();
+			else
+				return new Accept("magic");
+		}
+
+		@Override
+		public State copy() {
+			return new CountingDigits();
+		}
+
+	}
+	
+	/**
+	 * First: return response
+	 * Then: consume, Closure on EOF
+	 */
+	private class FirstOrConsume extends StateAdapter{
+
+		private final IStateChange response;
+		private boolean visited = false;
+		
+		public FirstOrConsume(IStateChange change){
+			response = change;
+		}
+		
+		public FirstOrConsume(IStateChange change, boolean visited){
+			this(change);
+			this.visited = visited;
+		}
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (!visited){
+				visited = true;
+				return response;
+			}
+			if (c == -1)
+				return new Closure();
+			return new Consume();
+		}
+
+		@Override
+		public State copy() {
+			return new FirstOrConsume(response, visited);
+		}
+
+	}
+	
+	/**
+	 * If digit is read: step into targets
+	 * Else: closure
+	 */
+	private class FastStart extends FastStateAdapter{
+
+		private final int[] targets;
+		
+		public FastStart(int[] targets){
+			this.targets = targets;
+		}
+		
+		@Override
+		public int step(int c) {
+			if (!Character.isDigit(c))
+				return closure(null);
+			if (targets.length == 1)
+				return goTo(targets[0]);
+			return guess(targets);
+		}
+
+		@Override
+		public State copy() {
+			return new FastStart(targets);
+		}
+
+	}
+	
+	/**
+	 * Count and
+	 * If digit is read: consume
+	 * Else: accept "fast"
+	 */
+	private class FastDigits extends FastStateAdapter{
+
+		@Override
+		public int step(int c) {
+			digitsFed++;
+			if (Character.isDigit(c))
+				return consume();
+			return accept("fast");
+		}
+
+		@Override
+		public State copy() {
+			return new FastDigits();
+		}
+
+	}
+	
+	/**
+	 * Count and
+	 * If digit is read: return run
+	 * Else: accept the digits read
+	 */
+	private class RunDigits extends StateAdapter implements RunListener{
+
+		private final IStateChange run;
+		private String content = "";
+		
+		public RunDigits(IStateChange run){
+			this.run = run;
+		}
+		
+		@Override
+		public IStateChange feed(int c) {
+			digitsFed++;
+			if (!Character.isDigit(c))
+				return new Accept(content);
+			content += (char) c;
+			return run;
+		}
+		
+		@Override
+		public void consumed(char[] chars, int offset, int length) {
+			content += new String(chars, offset, length);
+		}
+
+		@Override
+		public State copy() {
+			RunDigits out = new RunDigits(run);
+			out.content = content;
+			return out;
+		}
+
+	}
+	
+	/**
+	 * Count and
+	 * If EOF is read: closure with the structural characters read
+	 * Else: remember the character and skip to the next structural character
+	 */
+	private class Structure extends StateAdapter{
+
+		private String content = "";
+		
+		@Override
+		public IStateChange feed(int c) {
+			structuresFed++;
+			if (c == -1)
+				return new Closure(content);
+			content += (char) c;
+			return SkipToStructural.INSTANCE;
+		}
+		
+		@Override
+		public State copy() {
+			Structure out = new Structure();
+			out.content = content;
+			return out;
+		}
+
+	}
+	
+	/**
+	 * Whitespace and a list of numbers between brackets,
+	 * counting the lists opened
+	 */
+	private class ListOfNumbers extends StateAdapter{
+
+		private boolean opened = false;
+		private boolean closed = false;
+		private boolean expectNumber = true;
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (Character.isWhitespace(c))
+				return Consume.INSTANCE;
+			if (closed)
+				return c == -1 ? Closure.INSTANCE : Fail.INSTANCE;
+			if (!opened){
+				if (c != '[')
+					return Fail.INSTANCE;
+				listsOpened.incrementAndGet();
+				opened = true;
+				return Consume.INSTANCE;
+			}
+			if (!expectNumber && c == ','){
+				expectNumber = true;
+				return Consume.INSTANCE;
+			}
+			if (!expectNumber && c == ']'){
+				closed = true;
+				return Consume.INSTANCE;
+			}
+			if (expectNumber && Character.isDigit(c)){
+				expectNumber = false;
+				return new Goto("number");
+			}
+			return Fail.INSTANCE;
+		}
+		
+		@Override
+		public State copy() {
+			ListOfNumbers out = new ListOfNumbers();
+			out.opened = opened;
+			out.closed = closed;
+			out.expectNumber = expectNumber;
+			return out;
+		}
+
+	}
+	
+	/**
+	 * If digit is read: consume
+	 * Else: accept the digits read
+	 */
+	private class Number extends StateAdapter{
+
+		private String content = "";
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (Character.isDigit(c)){
+				content += (char) c;
+				return Consume.INSTANCE;
+			}
+			return new Accept(content);
+		}
+		
+		@Override
+		public State copy() {
+			Number out = new Number();
+			out.content = content;
+			return out;
+		}
+
+	}
+	
+	/**
+	 * Words and numbers, with brackets, commas and whitespace in between
+	 */
+	private class WordsAndNumbers extends StateAdapter{
+
+		@Override
+		public IStateChange feed(int c) {
+			if (c == -1)
+				return Closure.INSTANCE;
+			if (c == '[')
+				listsOpened.incrementAndGet();
+			if (Character.isWhitespace(c) || c == '[' || c == ']' || c == ',')
+				return Consume.INSTANCE;
+			if (Character.isLetter(c))
+				return new Goto("word");
+			if (Character.isDigit(c))
+				return new Goto("number");
+			return Fail.INSTANCE;
+		}
+		
+		@Override
+		public State copy() {
+			return new WordsAndNumbers();
+		}
+
+	}
+	
+	/**
+	 * Accept the letters read
+	 */
+	private class Word extends StateAdapter{
+
+		private String content = "";
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (Character.isLetter(c)){
+				content += (char) c;
+				return Consume.INSTANCE;
+			}
+			return new Accept(content);
+		}
+		
+		@Override
+		public State copy() {
+			Word out = new Word();
+			out.content = content;
+			return out;
+		}
+
+	}
+	
+	/**
+	 * Log all parse events as +name@offset, -name(content)@offset 
+	 * and ?alternatives@offset
+	 */
+	private class EventLog implements ParseListener{
+		
+		private final StringBuilder log = new StringBuilder();
+
+		@Override
+		public void onEnter(String stateName, int offset) {
+			log.append('+').append(stateName).append('@').append(offset).append(' ');
+		}
+
+		@Override
+		public void onExit(String stateName, String content, int offset) {
+			log.append('-').append(stateName).append('(').append(content).append(")@").append(offset).append(' ');
+		}
+
+		@Override
+		public void onAmbiguityResolved(int alternatives, int offset) {
+			log.append('?').append(alternatives).append('@').append(offset).append(' ');
+		}
+		
+		@Override
+		public String toString(){
+			return log.toString();
+		}
+		
+	}
+	
+	/**
+	 * An input of nothing but spaces, that never ends
+	 */
+	private class Exploding extends StateAdapter{
+		
+		@Override
+		public IStateChange feed(int c) {
+			if (c == -1)
+				return new Fail();
+			return new Split("s", "s");
+		}
+
+		@Override
+		public State copy() {
+			return new Exploding();
+		}
+		
+	}
+	
+	private class EndlessWhitespace extends CharSource{
+		
+		private final CountDownLatch started;
+		
+		public EndlessWhitespace(CountDownLatch started){
+			super(CharSource.DEFAULT_BLOCK_SIZE);
+			this.started = started;
+		}
+
+		@Override
+		protected int fill(char[] buffer) throws IOException {
+			started.countDown();
+			Arrays.fill(buffer, ' ');
+			return buffer.length;
+		}
+		
+	}
 }
@@ -0,0 +1,66 @@
+package test.integration;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.epm.edu.EasyParseMachine;
+import org.epm.edu.Grammar;
+import org.epm.edu.ParseTreeModel;
+import org.epm.edu.State;
+import org.epm.edu.statechanges.Accept;
+import org.epm.edu.statechanges.IStateChange;
+import org.junit.Test;
+
+import test.JSONReader;
+
+public class JSONReaderTest {
+
+	/**
+	 * Feed a fresh JSONString whitespace before its quotation mark,
+	 * it is consumed one by one and left out of the content
+	 */
+	@Test
+	public void testStringLeadingWhitespace() throws IOException{
+		//Given
+		Grammar grammar = JSONReader.newMachine().freeze();
+		State string = grammar.getPrototype(grammar.getStateId("JSONString")).copy();
+		
+		//When
+		IStateChange space = string.feed(' ');
+		IStateChange tab = string.feed('\t');
+		for (char c : "\"text\"".toCharArray())
+			string.feed(c);
+		IStateChange end = string.feed(-1);
+		
+		//Then
+		assertEquals(IStateChange.CONSUME, space.getKind());
+		assertEquals(IStateChange.CONSUME, tab.getKind());
+		assertEquals(IStateChange.ACCEPT, end.getKind());
+		assertEquals("\"text\"", ((Accept) end).getContent());
+	}
+	
+	/**
+	 * Strings in an array with whitespace in front of them
+	 * Produce
+	 *   -> root :
+	 *      -> JSONArray :
+	 *         -> JSONString : "\"a\""
+	 *         -> JSONString : "\"b\""
+	 */
+	@Test
+	public void testArrayOfStrings() throws IOException{
+		//Given
+		EasyParseMachine machine = JSONReader.newMachine();
+		machine.setInput("[ \"a\",\n  \"b\" ]");
+		
+		//When
+		ParseTreeModel model = machine.parse("root");
+		
+		//Then
+		assertNotNull(model);
+		assertEquals("\"a\"", model.getRoot().getChildAt(0).getChildAt(0).getContent());
+		assertEquals("\"b\"", model.getRoot().getChildAt(0).getChildAt(1).getContent());
+	}
+	
+}
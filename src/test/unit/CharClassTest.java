@@ -0,0 +1,91 @@
+package test.unit;
+
+import static org.junit.Assert.*;
+
+import org.epm.edu.CharClass;
+import org.junit.Test;
+
+public class CharClassTest {
+
+	@Test
+	public void testOf() {
+		//When
+		CharClass cc = CharClass.of("a\"\u00e9");
+		
+		//Then
+		assertTrue(cc.matches('a'));
+		assertTrue(cc.matches('"'));
+		assertTrue(cc.matches('\u00e9'));
+		assertFalse(cc.matches('b'));
+		assertFalse(cc.matches(-1));
+	}
+	
+	@Test
+	public void testRangeOr() {
+		//When
+		CharClass cc = CharClass.range('a', 'c').or(CharClass.range(0x400, 0x4FF)).or(CharClass.range('b', 'f'));
+		
+		//Then
+		assertTrue(cc.matches('a'));
+		assertTrue(cc.matches('f'));
+		assertTrue(cc.matches(0x400));
+		assertTrue(cc.matches(0x4FF));
+		assertFalse(cc.matches('g'));
+		assertFalse(cc.matches(0x3FF));
+		assertEquals(CharClass.range('a', 'f').or(CharClass.range(0x400, 0x4FF)), cc);
+	}
+	
+	@Test
+	public void testNot() {
+		//When
+		CharClass cc = CharClass.of("\"\\").not();
+		
+		//Then
+		assertTrue(cc.matches('a'));
+		assertTrue(cc.matches(0x2028));
+		assertFalse(cc.matches('"'));
+		assertFalse(cc.matches('\\'));
+		assertFalse(cc.matches(-1));
+		assertEquals(CharClass.of("\"\\"), cc.not());
+	}
+	
+	@Test
+	public void testWhitespace() {
+		for (int c = 0; c <= Character.MAX_VALUE; c++)
+			assertEquals(Character.isWhitespace(c), CharClass.WHITESPACE.matches(c));
+	}
+	
+	@Test
+	public void testScan() {
+		//Given
+		char[] buffer = "  12a ".toCharArray();
+		
+		//When
+		int digits = CharClass.DIGITS.scan(buffer, 2, buffer.length);
+		int all = CharClass.WHITESPACE.not().scan(buffer, 2, 5);
+		
+		//Then
+		assertEquals(4, digits);
+		assertEquals(5, all);
+	}
+	
+	@Test
+	public void testExcept() {
+		//Given
+		char[] buffer = "ab\\c\"d\te\u00e9".toCharArray();
+		
+		//When
+		CharClass cc = CharClass.except("\"\\", 0x20);
+		
+		//Then
+		assertEquals(CharClass.of("\"\\").or(CharClass.range(0, 0x1F)).not(), cc);
+		for (int i = 0; i < buffer.length; i++){
+			int scanned = cc.scan(buffer, i, buffer.length);
+			int expected = i;
+			while (expected < buffer.length && cc.matches(buffer[expected]))
+				expected++;
+			assertEquals(expected, scanned);
+		}
+	}
+	
+}
@@ -0,0 +1,116 @@
+package test.unit;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.epm.edu.ChannelCharSource;
+import org.epm.edu.CharSource;
+import org.epm.edu.MappedCharSource;
+import org.epm.edu.ReaderCharSource;
+import org.epm.edu.SequenceCharSource;
+import org.epm.edu.StreamCharSource;
+import org.junit.Test;
+
+public class CharSourceTest {
+
+	private static final String INPUT = "test0\ntest1\ntest2";
+	
+	@Test
+	public void testStream() throws IOException {
+		assertEquals(INPUT, readAll(new StreamCharSource(new ByteArrayInputStream(INPUT.getBytes()), 4)));
+	}
+	
+	@Test
+	public void testReader() throws IOException {
+		assertEquals(INPUT, readAll(new ReaderCharSource(new StringReader(INPUT), 4)));
+	}
+	
+	@Test
+	public void testChannel() throws IOException {
+		assertEquals(INPUT, readAll(new ChannelCharSource(Channels.newChannel(new ByteArrayInputStream(INPUT.getBytes())), 4)));
+	}
+	
+	@Test
+	public void testSequence() throws IOException {
+		assertEquals(INPUT, readAll(new SequenceCharSource(new StringBuilder(INPUT), 4)));
+	}
+	
+	@Test
+	public void testMapped() throws IOException {
+		//Given
+		Path file = Files.createTempFile("epm", ".txt");
+		Files.write(file, INPUT.getBytes());
+		FileChannel channel = FileChannel.open(file);
+		
+		//Then
+		try {
+			assertEquals(INPUT, readAll(new MappedCharSource(channel, 5, 4)));
+		} finally {
+			channel.close();
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testMappedWindows() throws IOException {
+		//Given
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) (i * 7);
+		Path file = Files.createTempFile("epm", ".bin");
+		Files.write(file, bytes);
+		FileChannel channel = FileChannel.open(file);
+		
+		//When
+		StringBuilder expected = new StringBuilder();
+		for (byte b : bytes)
+			expected.append((char) (b & 0xFF));
+		
+		//Then
+		try {
+			assertEquals(expected.toString(), readAll(new MappedCharSource(channel, 64, 24)));
+			assertEquals(expected.toString(), readAll(new MappedCharSource(channel, 10, 64)));
+		} finally {
+			channel.close();
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testUnsignedBytes() throws IOException {
+		//Given
+		CharSource source = new StreamCharSource(new ByteArrayInputStream(new byte[]{(byte) 0xC3, (byte) 0xA9}));
+		
+		//Then
+		assertEquals(0xC3, source.read());
+		assertEquals(0xA9, source.read());
+		assertEquals(-1, source.read());
+	}
+	
+	@Test
+	public void testEmpty() throws IOException {
+		CharSource source = new SequenceCharSource("");
+		
+		assertEquals(-1, source.read());
+		assertEquals(-1, source.read());
+	}
+	
+	/**
+	 * Read a CharSource until EOF
+	 */
+	private String readAll(CharSource source) throws IOException{
+		StringBuilder out = new StringBuilder();
+		int c;
+		while ((c = source.read()) != -1)
+			out.append((char) c);
+		return out.toString();
+	}
+
+}
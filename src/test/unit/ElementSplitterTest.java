@@ -0,0 +1,54 @@
+package test.unit;
+
+import static org.junit.Assert.*;
+
+import org.epm.edu.ElementSplitter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElementSplitterTest {
+
+	private ElementSplitter splitter;
+	
+	@Test
+	public void testSplit() {
+		//Given
+		char[] input = " [1, {\"a\": [2, 3]}, \"],\"] ".toCharArray();
+		
+		//When
+		int[] bounds = splitter.split(input, input.length);
+		
+		//Then
+		assertArrayEquals(new int[]{ 1, 3, 18, 24 }, bounds);
+	}
+	
+	@Test
+	public void testSplitUnbalanced() {
+		//Given
+		char[] input = "[1, 2".toCharArray();
+		
+		//When
+		int[] bounds = splitter.split(input, input.length);
+		
+		//Then
+		assertNull(bounds);
+	}
+	
+	@Test
+	public void testSplitTwoLists() {
+		//Given
+		char[] input = "[1] [2]".toCharArray();
+		
+		//When
+		int[] bounds = splitter.split(input, input.length);
+		
+		//Then
+		assertNull(bounds);
+	}
+	
+	@Before
+	public void setUp(){
+		splitter = ElementSplitter.json();
+	}
+	
+}
@@ -31,6 +31,38 @@ public class ParseTreeNodeTest {
 		assertEquals("hat", copy.getChildAt(0).getContent());
 	}
 	
+	@Test
+	public void testBranch() {
+		//Given
+		ParseTreeNode child = new ParseTreeNode("child");
+		node.addChild(child);
+		node.setContent("magic");
+
+		//When
+		ParseTreeNode branch = node.branch();
+		branch.addChild(new ParseTreeNode("other"));
+
+		//Then
+		assertEquals("magic", branch.getContent());
+		assertEquals(2, branch.getChildCount());
+		assertEquals(child, branch.getChildAt(0));
+		assertEquals(1, node.getChildCount());
+	}
+
+	@Test
+	public void testRelink() {
+		//Given
+		ParseTreeNode child = new ParseTreeNode("child");
+		node.addChild(child);
+		ParseTreeNode branch = node.branch();
+
+		//When
+		branch.relink();
+
+		//Then
+		assertEquals(branch, child.getParent());
+	}
+
 	@Test
 	public void testContent() {
 		//When
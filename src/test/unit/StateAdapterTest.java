@@ -0,0 +1,103 @@
+package test.unit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.epm.edu.DeepCopy;
+import org.epm.edu.StateAdapter;
+import org.epm.edu.statechanges.Consume;
+import org.epm.edu.statechanges.IStateChange;
+import org.junit.Test;
+
+public class StateAdapterTest {
+
+	@Test
+	public void testCopyFields() {
+		//Given
+		Counter state = new Counter();
+		state.count = 3;
+		state.label = "magic";
+		
+		//When
+		Counter copy = (Counter) state.copy();
+		
+		//Then
+		assertNotSame(state, copy);
+		assertEquals(3, copy.count);
+		assertEquals("magic", copy.label);
+	}
+	
+	@Test
+	public void testCopyInheritedFields() {
+		//Given
+		Buffered state = new Buffered();
+		state.count = 5;
+		
+		//When
+		Buffered copy = (Buffered) state.copy();
+		
+		//Then
+		assertEquals(5, copy.count);
+	}
+	
+	@Test
+	public void testDeepCopy() {
+		//Given
+		Buffered state = new Buffered();
+		state.content.append("hat");
+		state.seen.add(1);
+		state.shared.append("hat");
+		
+		//When
+		Buffered copy = (Buffered) state.copy();
+		copy.content.append("s");
+		copy.seen.add(2);
+		
+		//Then
+		assertEquals("hat", state.content.toString());
+		assertEquals("hats", copy.content.toString());
+		assertEquals(1, state.seen.size());
+		assertEquals(2, copy.seen.size());
+		assertSame(state.shared, copy.shared);
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void testCopyWithoutConstructor() {
+		new NoDefault(1).copy();
+	}
+	
+	private static class Counter extends StateAdapter{
+		int count;
+		String label;
+		
+		@Override
+		public IStateChange feed(int c) {
+			count++;
+			return Consume.INSTANCE;
+		}
+	}
+	
+	private static class Buffered extends Counter{
+		@DeepCopy
+		StringBuilder content = new StringBuilder();
+		@DeepCopy
+		final ArrayList<Integer> seen = new ArrayList<Integer>();
+		StringBuilder shared = new StringBuilder();
+	}
+	
+	private static class NoDefault extends StateAdapter{
+		@SuppressWarnings("unused")
+		private int value;
+		
+		public NoDefault(int value){
+			this.value = value;
+		}
+		
+		@Override
+		public IStateChange feed(int c) {
+			return Consume.INSTANCE;
+		}
+	}
+
+}
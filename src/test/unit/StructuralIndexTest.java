@@ -0,0 +1,84 @@
+package test.unit;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.epm.edu.StructuralIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StructuralIndexTest {
+
+	private StructuralIndex index;
+	
+	@Test
+	public void testJson() {
+		//Given
+		char[] buffer = "{\"a,\\\"b\": [1, \"\\\\\"]}".toCharArray();
+		
+		//When
+		index.index(buffer, 0, buffer.length);
+		
+		//Then
+		String structural = "";
+		for (int i = 0; i < buffer.length; i++){
+			if (index.isStructural(i))
+				structural += buffer[i];
+		}
+		assertEquals("{\"\":[,\"\"]}", structural);
+	}
+	
+	@Test
+	public void testNext() {
+		//Given
+		char[] buffer = new char[200];
+		Arrays.fill(buffer, 'x');
+		buffer[3] = ',';
+		buffer[150] = ':';
+		
+		//When
+		index.index(buffer, 0, buffer.length);
+		
+		//Then
+		assertEquals(3, index.next(0, buffer.length));
+		assertEquals(3, index.next(3, buffer.length));
+		assertEquals(150, index.next(4, buffer.length));
+		assertEquals(100, index.next(4, 100));
+		assertEquals(200, index.next(151, buffer.length));
+	}
+	
+	@Test
+	public void testWordsMatchCharacters() {
+		//Given
+		Random random = new Random(42);
+		char[] alphabet = "ab\"\\,[]{}:".toCharArray();
+		char[] buffer = new char[4096];
+		for (int i = 0; i < buffer.length; i++)
+			buffer[i] = alphabet[random.nextInt(alphabet.length)];
+		
+		//When
+		index.index(buffer, 0, buffer.length);
+		boolean[] words = new boolean[buffer.length];
+		for (int i = 0; i < buffer.length; i++)
+			words[i] = index.isStructural(i);
+		
+		//Then: blocks below 64 characters are indexed one character at a time
+		index.reset();
+		for (int from = 0; from < buffer.length; from += 63){
+			int length = Math.min(63, buffer.length - from);
+			char[] block = new char[length];
+			System.arraycopy(buffer, from, block, 0, length);
+			index.index(block, 0, length);
+			for (int i = 0; i < length; i++)
+				assertEquals("at " + (from + i), words[from + i], index.isStructural(i));
+		}
+	}
+	
+	@Before
+	public void setUp(){
+		index = StructuralIndex.json();
+	}
+	
+}